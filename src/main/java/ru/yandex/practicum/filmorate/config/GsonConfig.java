@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.config;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.yandex.practicum.filmorate.adapter.LocalDateAdapter;
+
+import java.time.LocalDate;
+import java.util.List;
+
+//Общий Gson для всех ответов. Конвертер ставится первым, поэтому объекты из контроллеров
+//пишутся им напрямую в поток ответа; тела запросов по-прежнему читает Jackson.
+@Configuration
+public class GsonConfig implements WebMvcConfigurer {
+
+    @Bean
+    public Gson gson() {
+        return gsonBuilder().create();
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, new GsonResponseConverter(gson(), gsonBuilder().setPrettyPrinting().create()));
+    }
+
+    private static GsonBuilder gsonBuilder() {
+        return new GsonBuilder()
+                .serializeNulls()
+                .registerTypeAdapter(LocalDate.class, new LocalDateAdapter());
+    }
+}
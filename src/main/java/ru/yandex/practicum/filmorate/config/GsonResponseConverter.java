@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.config;
+
+import com.google.gson.Gson;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.GsonHttpMessageConverter;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+//Только запись: ответы сериализуются в компактный JSON, с параметром pretty=true - с отступами.
+//Строковые тела оставлены StringHttpMessageConverter, чтобы не оборачивать их в кавычки.
+public class GsonResponseConverter extends GsonHttpMessageConverter {
+    private static final String PRETTY_PARAMETER = "pretty";
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Gson prettyGson;
+
+    public GsonResponseConverter(Gson gson, Gson prettyGson) {
+        super(gson);
+        this.prettyGson = prettyGson;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return !CharSequence.class.isAssignableFrom(clazz) && super.canWrite(clazz, mediaType);
+    }
+
+    //Буфер перед OutputStreamWriter: без него каждый мелкий токен JsonWriter кодируется отдельно
+    //и заводит свой CharBuffer, что на больших списках даёт аллокаций больше, чем сам ответ
+    @Override
+    protected void writeInternal(Object object, Type type, Writer writer) throws IOException {
+        Gson gson = isPrettyRequested() ? prettyGson : getGson();
+        Writer buffered = new BufferedWriter(writer, BUFFER_SIZE);
+
+        if (type instanceof ParameterizedType) {
+            gson.toJson(object, type, buffered);
+        } else {
+            gson.toJson(object, buffered);
+        }
+
+        buffered.flush();
+    }
+
+    private static boolean isPrettyRequested() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+
+        return attributes instanceof ServletRequestAttributes
+                && Boolean.parseBoolean(((ServletRequestAttributes) attributes).getRequest()
+                .getParameter(PRETTY_PARAMETER));
+    }
+}
@@ -1,7 +1,5 @@
 package ru.yandex.practicum.filmorate.controller;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
@@ -9,12 +7,11 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
-import ru.yandex.practicum.filmorate.adapter.LocalDateAdapter;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.service.director.DirectorService;
 
 import javax.validation.Valid;
-import java.time.LocalDate;
+import java.util.List;
 
 @RestController
 @RequestMapping("/directors")
@@ -23,38 +20,34 @@ import java.time.LocalDate;
 public class DirectorController {
 
     private final DirectorService directorService;
-    private final Gson gson = new GsonBuilder()
-            .setPrettyPrinting()
-            .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
-            .create();
 
     @GetMapping
-    public ResponseEntity<String> getDirectors() {
+    public ResponseEntity<List<Director>> getDirectors() {
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(gson.toJson(directorService.getAll()));
+                .body(directorService.getAll());
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<String> getDirectorById(@PathVariable long id) {
+    public ResponseEntity<Director> getDirectorById(@PathVariable long id) {
         Director getDirectorById = directorService.getDirectorById(id);
         log.info("Получен режиссёр по id {} ", id);
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(gson.toJson(getDirectorById));
+                .body(getDirectorById);
     }
 
     @PostMapping
-    public ResponseEntity<String> createDirector(@RequestBody @Valid Director director,
-                                                 BindingResult bindingResult) {
+    public ResponseEntity<Director> createDirector(@RequestBody @Valid Director director,
+                                                   BindingResult bindingResult) {
         if (bindingResult.hasErrors()) {
             log.error("Ошибки валидации при создании режиссёра - {}", bindingResult.getAllErrors());
 
             return ResponseEntity
                     .status(HttpStatus.BAD_REQUEST)
-                    .body(gson.toJson(director));
+                    .body(director);
 
         }
 
@@ -63,18 +56,18 @@ public class DirectorController {
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(gson.toJson(director));
+                .body(director);
     }
 
     @PutMapping
-    public ResponseEntity<String> updateDirector(@RequestBody @Valid Director director,
-                                                 BindingResult bindingResult) {
+    public ResponseEntity<Director> updateDirector(@RequestBody @Valid Director director,
+                                                   BindingResult bindingResult) {
         if (bindingResult.hasErrors()) {
             log.error("Ошибки валидации при обновлении режиссёра - {}", bindingResult.getAllErrors());
 
             return ResponseEntity
                     .status(HttpStatus.BAD_REQUEST)
-                    .body(gson.toJson(director));
+                    .body(director);
 
         }
         directorService.updateDirector(director);
@@ -82,7 +75,7 @@ public class DirectorController {
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(gson.toJson(director));
+                .body(director);
     }
 
     @DeleteMapping("/{id}")
@@ -1,7 +1,6 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
@@ -9,45 +8,55 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
-import ru.yandex.practicum.filmorate.adapter.LocalDateAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.service.feed.FeedService;
 import ru.yandex.practicum.filmorate.service.film.FilmService;
+import ru.yandex.practicum.filmorate.util.PagedJsonStreamer;
 
 import javax.validation.Valid;
-import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/films")
 @RequiredArgsConstructor
 @Slf4j
 public class FilmController {
+    private static final int DEFAULT_PAGE_SIZE = 100;
     private final FilmService filmService;
     private final FeedService feedService;
-    private final Gson gson = new GsonBuilder()
-            .setPrettyPrinting()
-            .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
-            .create();
+    private final Gson gson;
 
     @GetMapping
-    public ResponseEntity<String> getFilms() {
+    public ResponseEntity<List<Film>> getFilms(@RequestParam(required = false) Long after,
+                                               @RequestParam(required = false) Integer limit) {
+        //Без параметров отдаю весь список, как раньше; с after или limit - страницу по id
+        List<Film> films = after == null && limit == null
+                ? filmService.getAll()
+                : filmService.getPage(after == null ? 0 : after, limit == null ? DEFAULT_PAGE_SIZE : limit);
+
+        return ResponseEntity
+                .ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(films);
+    }
+
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamFilms() {
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(gson.toJson(filmService.getAll()));
+                .body(PagedJsonStreamer.stream(gson, filmService::getPage, Film::getId));
     }
 
     @PostMapping
-    public ResponseEntity<String> createFilm(@RequestBody @Valid Film film, BindingResult bindingResult) {
+    public ResponseEntity<Film> createFilm(@RequestBody @Valid Film film, BindingResult bindingResult) {
         if (bindingResult.hasErrors()) {
             log.error("Ошибки валидации при создании фильма - {}", bindingResult.getAllErrors());
             return ResponseEntity
                     .status(HttpStatus.BAD_REQUEST)
-                    .body(gson.toJson(film));
+                    .body(film);
 
         }
 
@@ -57,17 +66,17 @@ public class FilmController {
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(gson.toJson(film));
+                .body(film);
     }
 
     @PutMapping
-    public ResponseEntity<String> updateFilm(@RequestBody @Valid Film film, BindingResult bindingResult) {
+    public ResponseEntity<Film> updateFilm(@RequestBody @Valid Film film, BindingResult bindingResult) {
         if (bindingResult.hasErrors()) {
             log.error("Ошибки валидации при обновлении фильма - {}", bindingResult.getAllErrors());
 
             return ResponseEntity
                     .status(HttpStatus.BAD_REQUEST)
-                    .body(gson.toJson(film));
+                    .body(film);
 
         }
 
@@ -77,7 +86,7 @@ public class FilmController {
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(gson.toJson(film));
+                .body(film);
     }
 
     @PutMapping("/{id}/like/{userId}")
@@ -113,18 +122,18 @@ public class FilmController {
     }
 
     @GetMapping("/popular")
-    public ResponseEntity<String> getPopularFilms(@RequestParam(required = false, defaultValue = "10") Short count,
-                                                  @RequestParam(required = false, defaultValue = "0") Long genreId,
-                                                  @RequestParam(required = false, defaultValue = "0") Integer year) {
+    public ResponseEntity<List<Film>> getPopularFilms(@RequestParam(required = false, defaultValue = "10") Short count,
+                                                      @RequestParam(required = false, defaultValue = "0") Long genreId,
+                                                      @RequestParam(required = false, defaultValue = "0") Integer year) {
         log.info("GET request with parameters: count = {}, genreId = {}, date = {}", count, genreId, year);
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(gson.toJson(filmService.getPopularFilmsByParameters(count, genreId, year)));
+                .body(filmService.getPopularFilmsByParameters(count, genreId, year));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<String> getFilmById(@PathVariable String id) {
+    public ResponseEntity<Film> getFilmById(@PathVariable String id) {
 
         Film film = filmService.getFilmFull(Long.valueOf(id));
         log.info("Выдан фильм с айди - {}", id);
@@ -132,7 +141,7 @@ public class FilmController {
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(gson.toJson(film));
+                .body(film);
     }
 
     @GetMapping("/common")
@@ -160,20 +169,16 @@ public class FilmController {
 
     @GetMapping("/search")
     public ResponseEntity<List<Film>> searchFilms(@RequestParam("query") String query,
-                                                  @RequestParam("by") List<String> by) {
-        List<Film> films = new ArrayList<>();
-        if (by.contains("title")) {
-            films.addAll(filmService.findByTitleContainingIgnoreCase(query));
-        }
-        if (by.contains("director")) {
-            films.addAll(filmService.findByDirectorsNameContainingIgnoreCase(query));
-        }
-
+                                                  @RequestParam("by") List<String> by,
+                                                  @RequestParam(required = false) Integer limit) {
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(films.stream()
-                        .sorted(Comparator.comparing(Film::sumLikes).reversed())
-                        .collect(Collectors.toList()));
+                .body(filmService.search(query, by.contains("title"), by.contains("director"), limit));
+    }
+
+    @GetMapping("/search/stats")
+    public Map<String, Long> getSearchStats() {
+        return filmService.getSearchStats();
     }
 }
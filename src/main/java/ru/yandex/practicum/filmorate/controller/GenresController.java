@@ -1,6 +1,5 @@
 package ru.yandex.practicum.filmorate.controller;
 
-import com.google.gson.Gson;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.MediaType;
@@ -12,6 +11,8 @@ import org.springframework.web.bind.annotation.RestController;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.service.genre.GenresService;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/genres")
 @RequiredArgsConstructor
@@ -19,18 +20,17 @@ import ru.yandex.practicum.filmorate.service.genre.GenresService;
 public class GenresController {
 
     private final GenresService genresService;
-    private final Gson gson = new Gson();
 
     @GetMapping
-    public ResponseEntity<String> getGenres() {
+    public ResponseEntity<List<Genre>> getGenres() {
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(gson.toJson(genresService.getAll()));
+                .body(genresService.getAll());
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<String> getGenreById(@PathVariable Long id) {
+    public ResponseEntity<Genre> getGenreById(@PathVariable Long id) {
 
         Genre genreById = genresService.getGenreById(id);
 
@@ -39,6 +39,6 @@ public class GenresController {
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(gson.toJson(genreById));
+                .body(genreById);
     }
 }
@@ -1,6 +1,5 @@
 package ru.yandex.practicum.filmorate.controller;
 
-import com.google.gson.Gson;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.MediaType;
@@ -12,24 +11,25 @@ import org.springframework.web.bind.annotation.RestController;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.service.mpa.MpaService;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/mpa")
 @RequiredArgsConstructor
 @Slf4j
 public class MpaController {
     private final MpaService mpaService;
-    private final Gson gson = new Gson();
 
     @GetMapping
-    public ResponseEntity<String> getGenres() {
+    public ResponseEntity<List<Mpa>> getGenres() {
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(gson.toJson(mpaService.getAll()));
+                .body(mpaService.getAll());
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<String> getGenreById(@PathVariable Long id) {
+    public ResponseEntity<Mpa> getGenreById(@PathVariable Long id) {
 
         Mpa mpaById = mpaService.getMpaById(id);
 
@@ -38,6 +38,6 @@ public class MpaController {
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(gson.toJson(mpaById));
+                .body(mpaById);
     }
 }
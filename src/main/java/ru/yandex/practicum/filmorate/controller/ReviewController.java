@@ -1,7 +1,5 @@
 package ru.yandex.practicum.filmorate.controller;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
@@ -23,19 +21,15 @@ import java.util.List;
 public class ReviewController {
     private final ReviewService reviewService;
     private final FeedService feedService;
-    private final Gson gson = new GsonBuilder()
-            .setPrettyPrinting()
-            .serializeNulls()
-            .create();
 
     @PostMapping
-    public ResponseEntity<String> addReview(@RequestBody @Valid Review review, BindingResult bindingResult) {
+    public ResponseEntity<Review> addReview(@RequestBody @Valid Review review, BindingResult bindingResult) {
         if (bindingResult.hasErrors()) {
             log.error("Ошибки валидации при создании ревью - {}", bindingResult.getAllErrors());
 
             return ResponseEntity
                     .status(HttpStatus.BAD_REQUEST)
-                    .body(gson.toJson(review));
+                    .body(review);
 
         }
 
@@ -46,17 +40,17 @@ public class ReviewController {
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(gson.toJson(addedReview));
+                .body(addedReview);
     }
 
     @PutMapping()
-    public ResponseEntity<String> updateReview(@RequestBody @Valid Review review, BindingResult bindingResult) {
+    public ResponseEntity<Review> updateReview(@RequestBody @Valid Review review, BindingResult bindingResult) {
         if (bindingResult.hasErrors()) {
             log.error("Ошибки валидации при обновлении ревью - {}", bindingResult.getAllErrors());
 
             return ResponseEntity
                     .status(HttpStatus.BAD_REQUEST)
-                    .body(gson.toJson(review));
+                    .body(review);
 
         }
 
@@ -67,7 +61,7 @@ public class ReviewController {
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(gson.toJson(updatedReview));
+                .body(updatedReview);
     }
 
     @DeleteMapping("/{id}")
@@ -82,32 +76,28 @@ public class ReviewController {
     }
 
     @GetMapping("/{reviewId}")
-    public ResponseEntity<String> getReviewById(@PathVariable Long reviewId) {
+    public ResponseEntity<Review> getReviewById(@PathVariable Long reviewId) {
         Review review = reviewService.getReviewById(reviewId);
         log.info("Получен отзыв с id {}", reviewId);
 
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(gson.toJson(review));
+                .body(review);
     }
 
+    //Отзывы по убыванию полезности. Следующая страница - after = id последнего отзыва предыдущей.
     @GetMapping
-    public ResponseEntity<String> getReviewsByFilmId(@RequestParam(required = false) Long filmId,
-                                                     @RequestParam(required = false, defaultValue = "10") int count) {
-        List<Review> reviews;
-
-        if (filmId == null) {
-            reviews = reviewService.getAllReviews();
-        } else {
-            reviews = reviewService.getReviewsByFilmId(filmId, count);
-        }
+    public ResponseEntity<List<Review>> getReviewsByFilmId(@RequestParam(required = false) Long filmId,
+                                                           @RequestParam(required = false) Long after,
+                                                           @RequestParam(required = false, defaultValue = "10") int count) {
+        List<Review> reviews = reviewService.getTopReviews(filmId, after, count);
         log.info("Получено {} отзывов", reviews.size());
 
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(gson.toJson(reviews));
+                .body(reviews);
     }
 
     @PutMapping("/{reviewId}/like/{userId}")
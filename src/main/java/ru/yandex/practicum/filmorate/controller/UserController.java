@@ -1,7 +1,6 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
@@ -9,32 +8,39 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
-import ru.yandex.practicum.filmorate.adapter.LocalDateAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.model.Feed;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.feed.FeedService;
 import ru.yandex.practicum.filmorate.service.user.UserService;
+import ru.yandex.practicum.filmorate.util.PagedJsonStreamer;
 
 import javax.validation.Valid;
-import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/users")
 @RequiredArgsConstructor
 @Slf4j
 public class UserController {
+    private static final int DEFAULT_PAGE_SIZE = 100;
     private final UserService userService;
     private final FeedService feedService;
-    private final Gson gson = new GsonBuilder()
-            .setPrettyPrinting()
-            .serializeNulls()
-            .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
-            .create();
+    private final Gson gson;
 
     @GetMapping
-    public ResponseEntity<List<User>> getFilms() {
+    public ResponseEntity<List<User>> getFilms(@RequestParam(required = false) Long after,
+                                               @RequestParam(required = false) Integer limit) {
+        //С after или limit отдаю страницу по id, пустая страница означает конец списка
+        if (after != null || limit != null) {
+            return ResponseEntity
+                    .ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(userService.getPage(after == null ? 0 : after, limit == null ? DEFAULT_PAGE_SIZE : limit));
+        }
+
         List<User> all = userService.getAll();
 
         if (all.isEmpty()) {
@@ -49,14 +55,22 @@ public class UserController {
                 .body(all);
     }
 
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamUsers() {
+        return ResponseEntity
+                .ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(PagedJsonStreamer.stream(gson, userService::getPage, User::getId));
+    }
+
     @PostMapping
-    public ResponseEntity<String> createUser(@RequestBody @Valid User user, BindingResult bindingResult) {
+    public ResponseEntity<User> createUser(@RequestBody @Valid User user, BindingResult bindingResult) {
         if (bindingResult.hasErrors()) {
             log.error("Ошибки валидации при создании пользователя - {}", bindingResult.getAllErrors());
 
             return ResponseEntity
                     .status(HttpStatus.BAD_REQUEST)
-                    .body(gson.toJson(user));
+                    .body(user);
 
         }
 
@@ -66,17 +80,17 @@ public class UserController {
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(gson.toJson(user));
+                .body(user);
     }
 
     @PutMapping
-    public ResponseEntity<String> updateUser(@RequestBody @Valid User user, BindingResult bindingResult) {
+    public ResponseEntity<User> updateUser(@RequestBody @Valid User user, BindingResult bindingResult) {
         if (bindingResult.hasErrors()) {
             log.error("Ошибки валидации при обновлении пользователя - {}", bindingResult.getAllErrors());
 
             return ResponseEntity
                     .status(HttpStatus.NOT_FOUND)
-                    .body(gson.toJson(user));
+                    .body(user);
 
         }
 
@@ -87,11 +101,11 @@ public class UserController {
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(gson.toJson(user));
+                .body(user);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<String> getUserById(@PathVariable Long id) {
+    public ResponseEntity<User> getUserById(@PathVariable Long id) {
         User user = userService.getById(id);
         log.info("Выдан пользователь с айди - {}", user);
 
@@ -99,7 +113,7 @@ public class UserController {
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(gson.toJson(user));
+                .body(user);
     }
 
     @PutMapping("/{id}/friends/{friendId}")
@@ -134,7 +148,7 @@ public class UserController {
     }
 
     @GetMapping("/{id}/friends")
-    public ResponseEntity<String> getUserFriends(@PathVariable String id) {
+    public ResponseEntity<List<User>> getUserFriends(@PathVariable String id) {
         List<User> friendsId = userService.getFriends(Long.valueOf(id));
         log.info("Выданы айди друзей пользователя с айди - {}", id);
 
@@ -142,11 +156,11 @@ public class UserController {
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(gson.toJson(friendsId));
+                .body(friendsId);
     }
 
     @GetMapping("/{id}/friends/common/{otherId}")
-    public ResponseEntity<String> getUserFriends(@PathVariable String id, @PathVariable String otherId) {
+    public ResponseEntity<List<User>> getUserFriends(@PathVariable String id, @PathVariable String otherId) {
         List<User> mutualFriends = userService.getMutualFriends(Long.valueOf(id), Long.valueOf(otherId));
         log.info("Общие друзья пользователя {} и {}", id, otherId);
 
@@ -154,22 +168,47 @@ public class UserController {
         return ResponseEntity
                 .ok()
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(gson.toJson(mutualFriends));
+                .body(mutualFriends);
     }
 
     @GetMapping("/{id}/feed")
-    public List<Feed> getUserFeeds(@PathVariable Long id) {
-        List<Feed> feeds = feedService.getFeeds(id);
+    public List<Feed> getUserFeeds(@PathVariable Long id,
+                                   @RequestParam(required = false) Long before,
+                                   @RequestParam(required = false) Integer limit) {
+        List<Feed> feeds;
+
+        //С before или limit отдаю последние события до before, следующая страница - before = eventId первого
+        if (before != null || limit != null) {
+            feeds = feedService.getFeedsPage(id, before == null ? Long.MAX_VALUE : before,
+                    limit == null ? DEFAULT_PAGE_SIZE : limit);
+        } else {
+            feeds = feedService.getFeeds(id);
+        }
         log.info("Лента событий пользователя с айди {}", id);
 
         return feeds;
     }
 
+    @GetMapping("/{id}/timeline")
+    public List<Feed> getUserTimeline(@PathVariable Long id,
+                                      @RequestParam(required = false) Long before,
+                                      @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        List<Feed> feeds = feedService.getTimeline(id, before == null ? Long.MAX_VALUE : before, limit);
+        log.info("Лента друзей пользователя с айди {}", id);
+
+        return feeds;
+    }
+
     @GetMapping("/{id}/recommendations")
     public List<Film> getRecommendations(@PathVariable Long id) {
         return userService.getRecommendations(id);
     }
 
+    @GetMapping("/recommendations/stats")
+    public Map<String, Long> getRecommendationStats() {
+        return userService.getRecommendationStats();
+    }
+
     @DeleteMapping("/{id}")
     public void deleteUser(@PathVariable Long id) {
         userService.deleteById(id);
@@ -7,6 +7,10 @@ import java.util.List;
 public interface FeedService {
     List<Feed> getFeeds(Long userId);
 
+    List<Feed> getFeedsPage(Long userId, long beforeEventId, int limit);
+
+    List<Feed> getTimeline(Long userId, long beforeEventId, int limit);
+
     void saveAddFriend(Long userId, Long friendId);
 
     void saveRemoveFriend(Long userId, Long friendId);
@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.service.feed;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exceptions.IncorrectParameterException;
 import ru.yandex.practicum.filmorate.exceptions.UserNotFoundException;
 import ru.yandex.practicum.filmorate.model.Feed;
 import ru.yandex.practicum.filmorate.storage.feed.FeedStorage;
@@ -12,19 +13,46 @@ import java.util.List;
 @Service
 @RequiredArgsConstructor
 public class FeedServiceImpl implements FeedService {
+    private static final int MAX_PAGE_SIZE = 1000;
 
     private final FeedStorage feedStorage;
     private final UserStorage userStorage;
 
     @Override
     public List<Feed> getFeeds(Long userId) {
-        if (userStorage.getById(userId).isEmpty()) {
+        if (!userStorage.existsById(userId)) {
             throw new UserNotFoundException("Пользователь с айди " + userId + " не найден");
         }
 
         return feedStorage.getFeeds(userId);
     }
 
+    @Override
+    public List<Feed> getFeedsPage(Long userId, long beforeEventId, int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new IncorrectParameterException("limit");
+        }
+
+        if (!userStorage.existsById(userId)) {
+            throw new UserNotFoundException("Пользователь с айди " + userId + " не найден");
+        }
+
+        return feedStorage.getFeedsPage(userId, beforeEventId, limit);
+    }
+
+    @Override
+    public List<Feed> getTimeline(Long userId, long beforeEventId, int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new IncorrectParameterException("limit");
+        }
+
+        if (!userStorage.existsById(userId)) {
+            throw new UserNotFoundException("Пользователь с айди " + userId + " не найден");
+        }
+
+        return feedStorage.getTimeline(userId, beforeEventId, limit);
+    }
+
     @Override
     public void saveAddFriend(Long userId, Long friendId) {
         feedStorage.saveAddFriend(userId, friendId);
@@ -0,0 +1,222 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.storage.director.DirectorEvent;
+import ru.yandex.practicum.filmorate.storage.director.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmEvent;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.util.search.TrigramIndex;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//Поиск фильмов по подстроке в названии и в имени режиссёра без обращения к базе.
+//Результаты упорядочены как в рейтинге: сначала больше лайков, при равенстве - более новый фильм.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FilmSearchIndex {
+    private static final Comparator<long[]> RANK = Comparator.<long[]>comparingLong(rank -> rank[0])
+            .thenComparingLong(rank -> rank[1]);
+
+    private final FilmStorage filmStorage;
+    private final DirectorStorage directorStorage;
+    private final PopularFilmsLeaderboard leaderboard;
+    private final SearchResultCache cache;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TrigramIndex titles = new TrigramIndex();
+    private final TrigramIndex directorNames = new TrigramIndex();
+    private final Map<Long, Set<Long>> filmsByDirector = new HashMap<>();
+    private final Map<Long, Set<Long>> directorsByFilm = new HashMap<>();
+
+    @PostConstruct
+    public void rebuild() {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            titles.clear();
+            directorNames.clear();
+            filmsByDirector.clear();
+            directorsByFilm.clear();
+
+            filmStorage.forEachTitle(titles::put);
+            directorStorage.getAllDirectors()
+                    .forEach(director -> directorNames.put(director.getId(), director.getName()));
+            filmStorage.forEachDirectorLink(this::link);
+
+            cache.clear();
+            log.info("Поисковый индекс построен, фильмов - {}, режиссёров - {}",
+                    titles.size(), directorNames.size());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    //Один проход по обоим индексам: кандидаты объединяются по id до загрузки фильмов из базы.
+    //Совпадения по тексту берутся из кэша, порядок по лайкам считается заново. Возвращает не больше limit id.
+    public List<Long> search(String query, boolean byTitle, boolean byDirector, int limit) {
+        SearchResultCache.Key key = new SearchResultCache.Key(TrigramIndex.normalize(query), byTitle, byDirector);
+        Optional<Set<Long>> cached = cache.get(key);
+
+        if (cached.isPresent()) {
+            return top(cached.get(), limit);
+        }
+
+        long version = cache.getVersion();
+        Set<Long> filmIds = new HashSet<>();
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            if (byTitle) {
+                filmIds.addAll(titles.search(query));
+            }
+
+            if (byDirector) {
+                directorNames.search(query)
+                        .forEach(directorId -> filmIds.addAll(filmsByDirector.getOrDefault(directorId, Set.of())));
+            }
+        } finally {
+            readLock.unlock();
+        }
+
+        cache.put(key, filmIds, version);
+        return top(filmIds, limit);
+    }
+
+    //Из кэша уходят только запросы, которые совпадают со старым или новым названием фильма
+    //либо с именем режиссёра, связь с которым появилась или пропала
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilm(FilmEvent event) {
+        Film film = event.getFilm();
+        long filmId = film.getId();
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            String titleBefore = titles.get(filmId);
+            Set<Long> directorsBefore = new HashSet<>(directorsByFilm.getOrDefault(filmId, Set.of()));
+            unlinkFilm(filmId);
+
+            if (event.getOperation() == Operation.REMOVE) {
+                titles.remove(filmId);
+            } else {
+                titles.put(filmId, film.getName());
+                film.getDirectors().forEach(director -> link(filmId, director.getId()));
+            }
+
+            String titleAfter = titles.get(filmId);
+            Set<Long> directorsAfter = directorsByFilm.getOrDefault(filmId, Set.of());
+            List<String> changedTitles = Objects.equals(titleBefore, titleAfter)
+                    ? List.of()
+                    : Arrays.asList(titleBefore, titleAfter);
+            List<String> changedNames = new ArrayList<>();
+
+            directorsBefore.stream()
+                    .filter(id -> !directorsAfter.contains(id))
+                    .forEach(id -> changedNames.add(directorNames.get(id)));
+            directorsAfter.stream()
+                    .filter(id -> !directorsBefore.contains(id))
+                    .forEach(id -> changedNames.add(directorNames.get(id)));
+
+            if (!changedTitles.isEmpty() || !changedNames.isEmpty()) {
+                cache.evictIf(key -> key.isByTitle() && containsQuery(changedTitles, key.getQuery())
+                        || key.isByDirector() && containsQuery(changedNames, key.getQuery()));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDirector(DirectorEvent event) {
+        Director director = event.getDirector();
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            List<String> changedNames = new ArrayList<>();
+            changedNames.add(directorNames.get(director.getId()));
+
+            if (event.getOperation() != Operation.REMOVE) {
+                directorNames.put(director.getId(), director.getName());
+                changedNames.add(directorNames.get(director.getId()));
+            } else {
+                directorNames.remove(director.getId());
+                Set<Long> filmIds = filmsByDirector.remove(director.getId());
+
+                if (filmIds != null) {
+                    filmIds.forEach(filmId -> directorsByFilm.get(filmId).remove(director.getId()));
+                }
+            }
+
+            cache.evictIf(key -> key.isByDirector() && containsQuery(changedNames, key.getQuery()));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public Map<String, Long> getCacheStats() {
+        return cache.getStats();
+    }
+
+    //Лайки читаются один раз до сортировки: рейтинг может измениться по ходу, а порядок должен быть устойчивым.
+    //В куче держатся limit лучших, на вершине - худший из них.
+    private List<Long> top(Collection<Long> filmIds, int limit) {
+        PriorityQueue<long[]> best = new PriorityQueue<>(RANK);
+
+        for (Long filmId : filmIds) {
+            best.add(new long[]{leaderboard.getLikes(filmId), filmId});
+
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+
+        List<Long> ids = new ArrayList<>(best.size());
+
+        while (!best.isEmpty()) {
+            ids.add(best.poll()[1]);
+        }
+
+        Collections.reverse(ids);
+        return ids;
+    }
+
+    private static boolean containsQuery(List<String> texts, String query) {
+        for (String text : texts) {
+            if (text != null && text.contains(query)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void link(long filmId, long directorId) {
+        filmsByDirector.computeIfAbsent(directorId, id -> new HashSet<>()).add(filmId);
+        directorsByFilm.computeIfAbsent(filmId, id -> new HashSet<>()).add(directorId);
+    }
+
+    private void unlinkFilm(long filmId) {
+        Set<Long> directorIds = directorsByFilm.remove(filmId);
+
+        if (directorIds == null) {
+            return;
+        }
+
+        for (Long directorId : directorIds) {
+            Set<Long> filmIds = filmsByDirector.get(directorId);
+            filmIds.remove(filmId);
+
+            if (filmIds.isEmpty()) {
+                filmsByDirector.remove(directorId);
+            }
+        }
+    }
+}
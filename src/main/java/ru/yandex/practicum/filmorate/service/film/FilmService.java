@@ -3,6 +3,7 @@ package ru.yandex.practicum.filmorate.service.film;
 import ru.yandex.practicum.filmorate.model.Film;
 
 import java.util.List;
+import java.util.Map;
 
 public interface FilmService {
     Film add(Film film);
@@ -21,6 +22,8 @@ public interface FilmService {
 
     List<Film> getAll();
 
+    List<Film> getPage(long afterId, int limit);
+
     Film getById(Long id);
 
     Film getFilmFull(Long id);
@@ -33,7 +36,7 @@ public interface FilmService {
 
     List<Film> getFilmsByDirectorSortedByYear(long directorId);
 
-    List<Film> findByTitleContainingIgnoreCase(String query);
+    List<Film> search(String query, boolean byTitle, boolean byDirector, Integer limit);
 
-    List<Film> findByDirectorsNameContainingIgnoreCase(String query);
+    Map<String, Long> getSearchStats();
 }
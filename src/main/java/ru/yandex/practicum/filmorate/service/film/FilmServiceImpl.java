@@ -1,13 +1,15 @@
 package ru.yandex.practicum.filmorate.service.film;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exceptions.FilmNotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.IncorrectParameterException;
+import ru.yandex.practicum.filmorate.exceptions.UserNotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.director.DirectorStorage;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -15,8 +17,12 @@ import java.util.stream.Collectors;
 @Service
 @RequiredArgsConstructor
 public class FilmServiceImpl implements FilmService {
+    private static final int MAX_PAGE_SIZE = 1000;
     private final FilmStorage filmStorage;
     private final DirectorStorage directorStorage;
+    private final UserStorage userStorage;
+    private final PopularFilmsLeaderboard leaderboard;
+    private final FilmSearchIndex searchIndex;
 
     @Override
     public Film add(Film film) {
@@ -55,35 +61,24 @@ public class FilmServiceImpl implements FilmService {
         filmStorage.delete(id);
     }
 
+    //Существование фильма и пользователя проверяет внешний ключ таблицы likes,
+    //отдельные запросы выполняются только чтобы выбрать текст ошибки
     @Override
     public void addLike(Long id, Long userId, Integer mark) {
         isUserIdPositive(userId);
 
-        Optional<Film> filmStorageById = filmStorage.getById(id);
-
-        if (filmStorageById.isEmpty()) {
-            throw new FilmNotFoundException("Ошибка, данный фильм не найден.");
-        }
-        filmStorage.addLike(id, userId, mark);
-        Film film = filmStorageById.get();
-        film.setRate(film.getRate() + 1);
-
-        Map<Long, Integer> usersWhoLike = film.getUsersWhoLike();
-
-        if (usersWhoLike == null) {
-            return;
-        }
-
-        usersWhoLike.put(userId, mark);
-        film.setUsersWhoLike(usersWhoLike);
+        try {
+            filmStorage.addLike(id, userId, mark);
+        } catch (DataIntegrityViolationException e) {
+            if (!filmStorage.existsById(id)) {
+                throw new FilmNotFoundException("Ошибка, данный фильм не найден.");
+            }
 
-        //Обновляю рейтинг фильма
-        Collection<Integer> marks = film.getUsersWhoLike().values();
-        if (marks.size() > 0) {
-            Float rate = ((Double) (marks.stream().mapToDouble(a -> a).sum() / marks.size())).floatValue();
-            film.setRate(rate);
+            if (!userStorage.existsById(userId)) {
+                throw new UserNotFoundException("Пользователя с таким айди не существует.");
+            }
+            throw e;
         }
-        filmStorage.update(film);
     }
 
     private static void isUserIdPositive(Long userId) {
@@ -96,40 +91,14 @@ public class FilmServiceImpl implements FilmService {
     public void removeLike(Long id, Long userId) {
         isUserIdPositive(userId);
 
-        Optional<Film> filmStorageById = filmStorage.getById(id);
-
-        if (filmStorageById.isEmpty()) {
+        if (!filmStorage.removeLike(id, userId) && !filmStorage.existsById(id)) {
             throw new FilmNotFoundException("Ошибка, данный фильм не найден.");
         }
-
-        filmStorage.removeLike(id, userId);
-
-        Film film = filmStorageById.get();
-
-        if (film.getRate() > 1) {
-            film.setRate(film.getRate() - 1);
-
-            Map<Long, Integer> usersWhoLike = film.getUsersWhoLike();
-
-            if (usersWhoLike == null) {
-                return;
-            }
-
-            usersWhoLike.remove(userId);
-            film.setUsersWhoLike(usersWhoLike);
-
-            filmStorage.update(film);
-        }
     }
 
     @Override
     public List<Film> getPopularFilms(short count) {
-
-        List<Film> all = filmStorage.getTheMostPopularFilms(count);
-
-        if (all == null) {
-            return new ArrayList<>();
-        }
+        List<Film> all = filmStorage.getFilmsByIds(leaderboard.getTop(count, 0, 0));
 
         List<Film> chartFilms = all.stream()
                 .sorted(Comparator.comparing(Film::getRate).reversed())
@@ -144,6 +113,15 @@ public class FilmServiceImpl implements FilmService {
         return filmStorage.getAll();
     }
 
+    @Override
+    public List<Film> getPage(long afterId, int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new IncorrectParameterException("limit");
+        }
+
+        return filmStorage.getPage(afterId, limit);
+    }
+
     @Override
     public Film getById(Long id) {
         Optional<Film> filmOptional = filmStorage.getById(id);
@@ -168,16 +146,8 @@ public class FilmServiceImpl implements FilmService {
     @Override
     public List<Film> getPopularFilmsByParameters(Short count, Long genreId, Integer year) {
         if (genreId == 0 && year == 0) return getPopularFilms(count);
-        List<Film> films = filmStorage.getTheMostPopularFilms(Short.MAX_VALUE);
-        if (genreId > 0) {
-            films.removeIf(f -> !(getGenreIdsForCurrentFilm(f).contains(genreId)));
-        }
-        if (year > 0) {
-            films.removeIf(f -> f.getReleaseDate().getYear() != year);
-        }
-        return films.stream().sorted(Comparator.comparing(Film::sumLikes).reversed())
-                .limit(count)
-                .collect(Collectors.toList());
+        //Рейтинг считается в памяти, из базы загружаются только попавшие в выдачу фильмы
+        return filmStorage.getFilmsByIds(leaderboard.getTop(count, genreId, year));
     }
 
     @Override
@@ -192,11 +162,6 @@ public class FilmServiceImpl implements FilmService {
                 .collect(Collectors.toList());
     }
 
-    private List<Long> getGenreIdsForCurrentFilm(Film film) {
-        Set<Genre> genres = film.getGenres();
-        return genres.stream().map(Genre::getId).collect(Collectors.toList());
-    }
-
     @Override
     public List<Film> getFilmsByDirectorSortedByLikes(long directorId) {
         directorStorage.getDirectorById(directorId);
@@ -210,12 +175,18 @@ public class FilmServiceImpl implements FilmService {
     }
 
     @Override
-    public List<Film> findByDirectorsNameContainingIgnoreCase(String query) {
-        return filmStorage.findByDirectorsNameContainingIgnoreCase(query);
+    public List<Film> search(String query, boolean byTitle, boolean byDirector, Integer limit) {
+        if (limit != null && (limit <= 0 || limit > MAX_PAGE_SIZE)) {
+            throw new IncorrectParameterException("limit");
+        }
+
+        //Подходящие фильмы ищутся в индексе в памяти, из базы загружаются только попавшие в выдачу
+        return filmStorage.getFilmsByIds(searchIndex.search(query, byTitle, byDirector,
+                limit == null ? Integer.MAX_VALUE : limit));
     }
 
     @Override
-    public List<Film> findByTitleContainingIgnoreCase(String query) {
-        return filmStorage.findByTitleContainingIgnoreCase(query);
+    public Map<String, Long> getSearchStats() {
+        return searchIndex.getCacheStats();
     }
 }
@@ -0,0 +1,154 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.storage.film.FilmEvent;
+import ru.yandex.practicum.filmorate.storage.film.FilmLikeEvent;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+
+//Рейтинг фильмов по количеству лайков в памяти с разбивкой по жанрам и годам выхода.
+//Порядок совпадает с FIND_TOP_FILMS: сначала больше лайков, при равенстве - более новый фильм.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PopularFilmsLeaderboard {
+    private static final Comparator<Rank> ORDER = Comparator.comparingLong(Rank::getLikes)
+            .thenComparingLong(Rank::getFilmId)
+            .reversed();
+
+    private final FilmStorage filmStorage;
+    private final Map<Long, FilmPosition> positions = new ConcurrentHashMap<>();
+    private final NavigableSet<Rank> all = new ConcurrentSkipListSet<>(ORDER);
+    private final Map<Long, NavigableSet<Rank>> byGenre = new ConcurrentHashMap<>();
+    private final Map<Integer, NavigableSet<Rank>> byYear = new ConcurrentHashMap<>();
+    private final Map<Long, Map<Integer, NavigableSet<Rank>>> byGenreAndYear = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public synchronized void rebuild() {
+        positions.values().forEach(this::unindex);
+        positions.clear();
+
+        Map<Long, Set<Long>> genres = new HashMap<>();
+        filmStorage.forEachGenreLink((filmId, genreId) -> {
+            genres.computeIfAbsent(filmId, id -> new HashSet<>()).add(genreId);
+        });
+
+        filmStorage.forEachPopularity((filmId, year, likes) -> {
+            put(new FilmPosition(new Rank(filmId, likes), year, genres.getOrDefault(filmId, Collections.emptySet())));
+        });
+
+        log.info("Рейтинг популярных фильмов построен, фильмов - {}", positions.size());
+    }
+
+    //Возвращает id самых популярных фильмов. Нулевые genreId и year означают отсутствие фильтра.
+    public List<Long> getTop(int count, long genreId, int year) {
+        NavigableSet<Rank> ranks;
+
+        if (genreId > 0 && year > 0) {
+            ranks = byGenreAndYear.getOrDefault(genreId, Collections.emptyMap()).get(year);
+        } else if (genreId > 0) {
+            ranks = byGenre.get(genreId);
+        } else if (year > 0) {
+            ranks = byYear.get(year);
+        } else {
+            ranks = all;
+        }
+
+        if (ranks == null || count <= 0) {
+            return new ArrayList<>();
+        }
+
+        return ranks.stream()
+                .limit(count)
+                .map(Rank::getFilmId)
+                .collect(Collectors.toList());
+    }
+
+    public long getLikes(long filmId) {
+        FilmPosition position = positions.get(filmId);
+        return position == null ? 0 : position.rank.getLikes();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onFilmLike(FilmLikeEvent event) {
+        FilmPosition position = positions.get(event.getFilmId());
+
+        if (position == null || event.getOperation() == Operation.UPDATE) {
+            return;
+        }
+
+        long delta = event.getOperation() == Operation.ADD ? 1 : -1;
+        unindex(position);
+        put(new FilmPosition(new Rank(event.getFilmId(), position.rank.getLikes() + delta),
+                position.year, position.genreIds));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onFilm(FilmEvent event) {
+        Film film = event.getFilm();
+        FilmPosition position = positions.remove(film.getId());
+        long likes = 0;
+
+        if (position != null) {
+            unindex(position);
+            likes = position.rank.getLikes();
+        }
+
+        if (event.getOperation() == Operation.REMOVE) {
+            return;
+        }
+
+        Set<Long> genreIds = film.getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toSet());
+        put(new FilmPosition(new Rank(film.getId(), likes), film.getReleaseDate().getYear(), genreIds));
+    }
+
+    private void put(FilmPosition position) {
+        positions.put(position.rank.getFilmId(), position);
+        all.add(position.rank);
+        byYear.computeIfAbsent(position.year, y -> new ConcurrentSkipListSet<>(ORDER)).add(position.rank);
+
+        for (Long genreId : position.genreIds) {
+            byGenre.computeIfAbsent(genreId, g -> new ConcurrentSkipListSet<>(ORDER)).add(position.rank);
+            byGenreAndYear.computeIfAbsent(genreId, g -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(position.year, y -> new ConcurrentSkipListSet<>(ORDER))
+                    .add(position.rank);
+        }
+    }
+
+    private void unindex(FilmPosition position) {
+        all.remove(position.rank);
+        byYear.get(position.year).remove(position.rank);
+
+        for (Long genreId : position.genreIds) {
+            byGenre.get(genreId).remove(position.rank);
+            byGenreAndYear.get(genreId).get(position.year).remove(position.rank);
+        }
+    }
+
+    @Value
+    private static class Rank {
+        long filmId;
+        long likes;
+    }
+
+    @RequiredArgsConstructor
+    private static class FilmPosition {
+        private final Rank rank;
+        private final int year;
+        private final Set<Long> genreIds;
+    }
+}
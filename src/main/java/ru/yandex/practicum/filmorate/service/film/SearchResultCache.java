@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import lombok.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+//Кэш результатов поиска: запрос в нижнем регистре и поля поиска -> id подходящих фильмов без сортировки.
+//Порядок по лайкам меняется постоянно, поэтому сортировка выполняется при каждом запросе, а кэшируется
+//только совпадение по тексту. Вытеснение LRU по размеру, сброс - только записей, затронутых изменением.
+@Component
+public class SearchResultCache {
+    private static final int MAX_SIZE = 1_000;
+
+    private final Map<Key, Set<Long>> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Set<Long>> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long version;
+
+    public synchronized Optional<Set<Long>> get(Key key) {
+        Set<Long> filmIds = entries.get(key);
+
+        if (filmIds == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+
+        hits.increment();
+        return Optional.of(filmIds);
+    }
+
+    //Версию нужно взять до поиска: если кэш сбросили во время поиска, результат не сохранится
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public synchronized void put(Key key, Set<Long> filmIds, long version) {
+        if (version == this.version) {
+            entries.put(key, Set.copyOf(filmIds));
+        }
+    }
+
+    public synchronized void evictIf(Predicate<Key> affected) {
+        version++;
+        int before = entries.size();
+        entries.keySet().removeIf(affected);
+        evictions.add(before - entries.size());
+    }
+
+    public synchronized void clear() {
+        version++;
+        entries.clear();
+    }
+
+    public Map<String, Long> getStats() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", hitCount);
+        stats.put("misses", total - hitCount);
+        stats.put("hitRatioPercent", total == 0 ? 0 : hitCount * 100 / total);
+        stats.put("evictions", evictions.sum());
+
+        synchronized (this) {
+            stats.put("size", (long) entries.size());
+        }
+        return stats;
+    }
+
+    @Value
+    public static class Key {
+        String query;
+        boolean byTitle;
+        boolean byDirector;
+    }
+}
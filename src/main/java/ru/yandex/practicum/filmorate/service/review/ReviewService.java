@@ -7,15 +7,13 @@ import java.util.List;
 public interface ReviewService {
     Review addReview(Review review);
 
-    List<Review> getAllReviews();
-
     Review getReviewById(Long id);
 
     void deleteReviewById(Long id);
 
     Review updateReview(Review review);
 
-    List<Review> getReviewsByFilmId(Long filmId, int count);
+    List<Review> getTopReviews(Long filmId, Long afterReviewId, int count);
 
     void addLike(Long reviewId, Long userId);
 
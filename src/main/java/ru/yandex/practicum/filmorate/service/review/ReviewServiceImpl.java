@@ -10,14 +10,13 @@ import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.review.ReviewStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
-import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class ReviewServiceImpl implements ReviewService {
+    private static final int MAX_PAGE_SIZE = 1000;
 
     private final ReviewStorage reviewStorage;
     private final UserStorage userStorage;
@@ -42,14 +41,7 @@ public class ReviewServiceImpl implements ReviewService {
     }
 
     private boolean checkExistFilmAndUser(Review review) {
-        return userStorage.getById(review.getUserId()).isEmpty() || filmStorage.getById(review.getFilmId()).isEmpty();
-    }
-
-    @Override
-    public List<Review> getAllReviews() {
-        return reviewStorage.getAllReviews().stream()
-                .sorted(Comparator.comparing(Review::getUseful).reversed())
-                .collect(Collectors.toList());
+        return !userStorage.existsById(review.getUserId()) || filmStorage.getById(review.getFilmId()).isEmpty();
     }
 
     @Override
@@ -76,10 +68,16 @@ public class ReviewServiceImpl implements ReviewService {
     }
 
     @Override
-    public List<Review> getReviewsByFilmId(Long filmId, int count) {
-        return reviewStorage.getReviewsByFilmId(filmId, count).stream()
-                .sorted(Comparator.comparing(Review::getUseful).reversed())
-                .collect(Collectors.toList());
+    public List<Review> getTopReviews(Long filmId, Long afterReviewId, int count) {
+        if (count <= 0 || count > MAX_PAGE_SIZE) {
+            throw new IncorrectParameterException("count");
+        }
+
+        if (afterReviewId != null) {
+            checkExistReview(reviewStorage.getReviewById(afterReviewId));
+        }
+
+        return reviewStorage.getTopReviews(filmId, afterReviewId, count);
     }
 
     @Override
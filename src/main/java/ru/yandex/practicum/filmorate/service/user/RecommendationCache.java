@@ -0,0 +1,128 @@
+package ru.yandex.practicum.filmorate.service.user;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.storage.film.FilmEvent;
+import ru.yandex.practicum.filmorate.storage.film.FilmLikeEvent;
+import ru.yandex.practicum.filmorate.util.recomendation.SlopeOneRecommender;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+//Кэш готовых рекомендаций (id фильмов) по пользователям. Вытеснение LRU по размеру и по времени жизни.
+//Запись сбрасывается, когда новую оценку получает сам пользователь или любой оценённый им фильм.
+@Component
+@RequiredArgsConstructor
+public class RecommendationCache {
+    private static final int MAX_SIZE = 10_000;
+    private static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final SlopeOneRecommender recommender;
+    private final Map<Long, CachedFilms> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CachedFilms> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+    private final Map<Long, Long> requests = new HashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    //Момент последнего сброса по каждому пользователю и общего сброса - по счётчику clock
+    private final Map<Long, Long> invalidatedAt = new HashMap<>();
+    private long clock;
+    private long clearedAt;
+
+    public synchronized Optional<List<Long>> get(long userId) {
+        requests.merge(userId, 1L, Long::sum);
+        CachedFilms entry = entries.get(userId);
+
+        if (entry == null || entry.expiresAt < System.currentTimeMillis()) {
+            misses.increment();
+            return Optional.empty();
+        }
+
+        hits.increment();
+        return Optional.of(entry.filmIds);
+    }
+
+    //Версию нужно взять до расчёта рекомендаций: если запись пользователя сбросили во время расчёта,
+    //результат не сохранится. Сбросы записей других пользователей на него не влияют.
+    public synchronized long getVersion() {
+        return clock;
+    }
+
+    public synchronized void put(long userId, List<Long> filmIds, long version) {
+        if (version >= clearedAt && version >= invalidatedAt.getOrDefault(userId, 0L)) {
+            entries.put(userId, new CachedFilms(List.copyOf(filmIds), System.currentTimeMillis() + TTL_MILLIS));
+        }
+    }
+
+    //Самые активные пользователи, чьи записи отсутствуют или устареют в ближайшие aheadMillis.
+    //Счётчики запросов при этом уменьшаются вдвое, чтобы активность со временем забывалась.
+    public synchronized List<Long> getUsersToRefresh(int count, long aheadMillis) {
+        long deadline = System.currentTimeMillis() + aheadMillis;
+        List<Long> users = requests.entrySet().stream()
+                .filter(e -> !entries.containsKey(e.getKey()) || entries.get(e.getKey()).expiresAt < deadline)
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed())
+                .limit(count)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+
+        requests.replaceAll((userId, value) -> value / 2);
+        requests.values().removeIf(value -> value == 0);
+        refreshes.add(users.size());
+        return users;
+    }
+
+    public synchronized void evict(long userId) {
+        invalidate(userId);
+        requests.remove(userId);
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("refreshes", refreshes.sum());
+
+        synchronized (this) {
+            stats.put("size", (long) entries.size());
+        }
+        return stats;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmLike(FilmLikeEvent event) {
+        List<Long> users = recommender.getUsersWhoRated(event.getFilmId());
+
+        synchronized (this) {
+            invalidate(event.getUserId());
+            users.forEach(this::invalidate);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onFilm(FilmEvent event) {
+        if (event.getOperation() == Operation.REMOVE) {
+            clearedAt = ++clock;
+            entries.clear();
+            invalidatedAt.clear();
+        }
+    }
+
+    private void invalidate(long userId) {
+        invalidatedAt.put(userId, ++clock);
+        entries.remove(userId);
+    }
+
+    @RequiredArgsConstructor
+    private static class CachedFilms {
+        private final List<Long> filmIds;
+        private final long expiresAt;
+    }
+}
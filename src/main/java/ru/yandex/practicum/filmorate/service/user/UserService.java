@@ -4,6 +4,7 @@ import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.List;
+import java.util.Map;
 
 public interface UserService {
     User add(User user);
@@ -24,7 +25,11 @@ public interface UserService {
 
     List<User> getAll();
 
+    List<User> getPage(long afterId, int limit);
+
     User getById(Long id);
 
     List<Film> getRecommendations(Long id);
+
+    Map<String, Long> getRecommendationStats();
 }
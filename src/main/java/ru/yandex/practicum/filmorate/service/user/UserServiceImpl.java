@@ -1,14 +1,16 @@
 package ru.yandex.practicum.filmorate.service.user;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exceptions.IncorrectParameterException;
 import ru.yandex.practicum.filmorate.exceptions.UserNotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
-import ru.yandex.practicum.filmorate.util.recomendation.SlopeOneUtil;
+import ru.yandex.practicum.filmorate.util.recomendation.SlopeOneRecommender;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -16,8 +18,14 @@ import java.util.stream.Collectors;
 @Service
 @RequiredArgsConstructor
 public class UserServiceImpl implements UserService {
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int RECOMMENDATIONS_LIMIT = 6;
+    private static final int RECOMMENDATIONS_REFRESH_USERS = 100;
+    private static final long RECOMMENDATIONS_REFRESH_MILLIS = 60_000;
     private final UserStorage userStorage;
     private final FilmStorage filmStorage;
+    private final SlopeOneRecommender recommender;
+    private final RecommendationCache recommendationCache;
 
     @Override
     public User add(User user) {
@@ -55,150 +63,120 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
+    @Transactional
     public void deleteById(Long id) {
+        //Лайки удаляю через хранилище фильмов, чтобы пересчитать счётчики лайков фильмов
+        filmStorage.removeLikesByUser(id);
         userStorage.delete(id);
+        recommendationCache.evict(id);
     }
 
     @Override
     public void addFriend(Long idFrom, Long idTo) {
-        Optional<User> from = userStorage.getById(idFrom);
-        Optional<User> to = userStorage.getById(idTo);
-
-        if (from.isPresent() && to.isPresent()) {
-            User userFrom = from.get();
-            User userTo = to.get();
-
-            userStorage.addFriend(idFrom, idTo);
-
-            userFrom.getFriendsId().add(userTo.getId());
-            userTo.getFriendsId().add(userFrom.getId());
-
-            userStorage.update(userFrom);
-            userStorage.update(userTo);
-        } else {
+        if (!userStorage.addFriend(idFrom, idTo)) {
             throw new UserNotFoundException("Пользователя с таким айди не существует.");
         }
     }
 
     @Override
     public void removeFriend(Long idFrom, Long idTo) {
-        Optional<User> from = userStorage.getById(idFrom);
-        Optional<User> to = userStorage.getById(idTo);
-
-        if (from.isPresent() && to.isPresent()) {
-            User userFrom = from.get();
-            User userTo = to.get();
-
-            if (userFrom.getFriendsId() == null || userTo.getFriendsId() == null) {
-                return;
-            }
-
-            userStorage.removeFriend(idFrom, idTo);
-        } else {
+        if (!userStorage.removeFriend(idFrom, idTo)) {
             throw new UserNotFoundException("Пользователя с таким айди нет в списке друзей.");
         }
     }
 
     @Override
     public List<User> getFriends(Long id) {
-        Optional<User> user = userStorage.getById(id);
-
-        if (user.isEmpty()) {
+        if (!userStorage.existsById(id)) {
             throw new UserNotFoundException("Пользователя с таким айди не существует.");
         }
 
-        if (user.get().getFriendsId() == null) {
-            return new ArrayList<>();
-        }
-
-        List<User> users = getFriendsList(user.get().getFriendsId());
-
-        return users;
+        return userStorage.getFriends(id);
     }
 
     @Override
     public List<User> getMutualFriends(Long from, Long to) {
-        Optional<User> fromUser = userStorage.getById(from);
-        Optional<User> toUser = userStorage.getById(to);
-
-        if (fromUser.isPresent() && toUser.isPresent()) {
-            User userFrom = fromUser.get();
-            User userTo = toUser.get();
-
-            Set<Long> friendsIdFrom = new HashSet<>();
-            Set<Long> friendsIdTo = new HashSet<>();
-            friendsIdFrom.addAll(userFrom.getFriendsId());
-            friendsIdTo.addAll(userTo.getFriendsId());
+        //Пересечение считает база, для несуществующих пользователей список пустой
+        return userStorage.getCommonFriends(from, to);
+    }
 
-            if (friendsIdFrom == null || friendsIdTo == null) {
-                return new ArrayList<>();
-            }
+    @Override
+    public List<User> getAll() {
+        return userStorage.getAll();
+    }
 
-            boolean isSizeMore = friendsIdFrom.size() > friendsIdTo.size();
+    @Override
+    public List<User> getPage(long afterId, int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new IncorrectParameterException("limit");
+        }
 
-            if (isSizeMore) {
-                friendsIdFrom.retainAll(friendsIdTo);
+        return userStorage.getPage(afterId, limit);
+    }
 
-                return getFriendsList(friendsIdFrom);
-            } else {
-                friendsIdTo.retainAll(friendsIdFrom);
+    @Override
+    public User getById(Long id) {
+        Optional<User> user = userStorage.getById(id);
 
-                return getFriendsList(friendsIdTo);
-            }
+        if (user.isEmpty()) {
+            throw new UserNotFoundException(String.format("Пользователя с таким айди %d нет.", id));
         }
 
-        return new ArrayList<>();
+        return user.get();
     }
 
-    private List<User> getFriendsList(Set<Long> friendsIdTo) {
-        List<Long> longs = new ArrayList<>(friendsIdTo);
-
-        List<User> users = new ArrayList<>();
+    @Override
+    public List<Film> getRecommendations(Long id) {
+        if (!userStorage.existsById(id)) {
+            throw new UserNotFoundException(String.format("Пользователя с таким айди %d нет.", id));
+        }
 
-        for (Long ids : longs) {
-            Optional<User> byId = userStorage.getById(ids);
+        Optional<List<Long>> cached = recommendationCache.get(id);
 
-            if (byId.isPresent()) {
-                users.add(byId.get());
-            }
+        if (cached.isPresent()) {
+            return filmStorage.getFilmsByIds(cached.get());
         }
 
-        return users;
-    }
+        long version = recommendationCache.getVersion();
+        List<Film> recommendations = computeRecommendations(id);
+        recommendationCache.put(id, recommendations.stream().map(Film::getId).collect(Collectors.toList()), version);
 
-    @Override
-    public List<User> getAll() {
-        return userStorage.getAll();
+        return recommendations;
     }
 
     @Override
-    public User getById(Long id) {
-        Optional<User> user = userStorage.getById(id);
+    public Map<String, Long> getRecommendationStats() {
+        return recommendationCache.getStats();
+    }
 
-        if (user.isEmpty()) {
-            throw new UserNotFoundException(String.format("Пользователя с таким айди %d нет.", id));
+    //Заранее пересчитываю рекомендации самым активным пользователям, пока их записи в кэше не устарели
+    @Scheduled(fixedDelay = RECOMMENDATIONS_REFRESH_MILLIS, initialDelay = RECOMMENDATIONS_REFRESH_MILLIS)
+    public void refreshRecommendations() {
+        for (Long id : recommendationCache.getUsersToRefresh(RECOMMENDATIONS_REFRESH_USERS,
+                RECOMMENDATIONS_REFRESH_MILLIS)) {
+            long version = recommendationCache.getVersion();
+            List<Long> filmIds = computeRecommendations(id).stream()
+                    .map(Film::getId)
+                    .collect(Collectors.toList());
+            recommendationCache.put(id, filmIds, version);
         }
-
-        return user.get();
     }
 
-    @Override
-    public List<Film> getRecommendations(Long id) {
-        List<User> users = userStorage.getAll();
-        List<Film> films = filmStorage.getAll();
-        Map<User, Map<Film, Double>> data = new HashMap<>();
-        for (User user : users) {
-            Map<Film, Double> likedFilms = films.stream()
-                    .filter(x -> x.getUsersWhoLike().containsKey(user.getId()))
-                    .collect(Collectors.toMap(f -> f, f -> f.getUsersWhoLike().get(user.getId()).doubleValue()));
-            data.put(user, likedFilms);
+    private List<Film> computeRecommendations(Long id) {
+        List<Long> filmIds = recommender.recommend(id);
+        List<Film> recommendations = new ArrayList<>();
+
+        //Ограничиваю рекомендации шестью фильмами, фильмы загружаю порциями в порядке прогноза
+        for (int from = 0; from < filmIds.size() && recommendations.size() < RECOMMENDATIONS_LIMIT;
+             from += RECOMMENDATIONS_LIMIT) {
+            List<Long> page = filmIds.subList(from, Math.min(from + RECOMMENDATIONS_LIMIT, filmIds.size()));
+            filmStorage.getFilmsByIds(page).stream()
+                    .filter(x -> x.getRate() > 5)
+                    .limit(RECOMMENDATIONS_LIMIT - recommendations.size())
+                    .forEach(recommendations::add);
         }
-        SlopeOneUtil.forUser = getById(id);
-        SlopeOneUtil.slopeOne(data);
-        //Ограничиваю рекомендации шестью фильмами
-        return SlopeOneUtil.slopeOne(data).stream()
-                .filter(x -> !x.getUsersWhoLike().containsKey(id) && x.getRate() > 5)
-                .limit(6).collect(Collectors.toList());
+
+        return recommendations;
     }
 
     private static void setNameIfItEmpty(User user) {
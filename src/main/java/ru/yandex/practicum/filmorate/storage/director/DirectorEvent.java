@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.storage.director;
+
+import lombok.Value;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Operation;
+
+//Публикуется хранилищем после сохранения, обновления или удаления режиссёра
+@Value
+public class DirectorEvent {
+    Director director;
+    Operation operation;
+}
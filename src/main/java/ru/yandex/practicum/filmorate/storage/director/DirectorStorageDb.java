@@ -4,12 +4,14 @@ import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataRetrievalFailureException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exceptions.DirectorNotFoundException;
 import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Operation;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -27,6 +29,7 @@ public class DirectorStorageDb implements DirectorStorage {
     public static final String ADD_FILMS_DIRECTOR = "INSERT INTO film_director (director_id, film_id) VALUES (?, ?)";
     public static final String DELETE_ALL_FILMS_BY_DIRECTOR = "DELETE FROM film_director WHERE director_id = ?";
     private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public List<Director> getAllDirectors() {
@@ -50,6 +53,7 @@ public class DirectorStorageDb implements DirectorStorage {
                 .usingGeneratedKeyColumns("director_id");
         long id = simpleJdbcInsert.executeAndReturnKey(director.directors()).longValue();
         director.setId(id);
+        eventPublisher.publishEvent(new DirectorEvent(director, Operation.ADD));
         log.info("Режиссёр {} сохранен ", director.getName());
         return director;
     }
@@ -57,6 +61,7 @@ public class DirectorStorageDb implements DirectorStorage {
     @Override
     public Director updateDirector(Director director) {
         if (jdbcTemplate.update(UPDATE_DIRECTOR, director.getName(), director.getId()) > 0) {
+            eventPublisher.publishEvent(new DirectorEvent(director, Operation.UPDATE));
             return director;
         }
         log.warn("Режиссёр с id {} не найден ", director.getId());
@@ -71,6 +76,7 @@ public class DirectorStorageDb implements DirectorStorage {
         }
         jdbcTemplate.update(DELETE_DIRECTOR, id);
         deleteAllFilmsByDirector(id);
+        eventPublisher.publishEvent(new DirectorEvent(Director.builder().id(id).build(), Operation.REMOVE));
         log.info("Режиссёр {}  удалён", id);
     }
 
@@ -1,95 +1,130 @@
 package ru.yandex.practicum.filmorate.storage.feed;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.EventType;
 import ru.yandex.practicum.filmorate.model.Feed;
 import ru.yandex.practicum.filmorate.model.Operation;
 
-import java.time.Instant;
-import java.util.List;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Component
 public class FeedDbStorage implements FeedStorage {
 
-    private static final String SAVE_ACTION = "INSERT INTO feeds (timestamp, user_id, event_type, operation, entity_id)" +
-            "VALUES (?, ?, ?, ?, ?)";
-    private static final String GET_FEEDS = "SELECT * FROM feeds WHERE user_id = ?";
+    private static final String GET_FEEDS = "SELECT * FROM feeds WHERE user_id = ? ORDER BY event_id";
+    private static final String GET_FEEDS_PAGE = "SELECT * FROM feeds WHERE user_id = ? AND event_id < ? " +
+            "ORDER BY event_id DESC LIMIT ?";
+    private static final String GET_TIMELINE_PAGE = "SELECT fe.* FROM timeline t " +
+            "JOIN feeds fe ON fe.event_id = t.event_id " +
+            "WHERE t.user_id = ? AND t.event_id < ? ORDER BY t.event_id DESC LIMIT ?";
+    private static final String FIND_CELEBRITY_FOLLOWINGS = "SELECT fr.friend_id FROM friend fr " +
+            "JOIN users u ON u.user_id = fr.friend_id WHERE fr.user_id = ? AND u.followers > ?";
+    private static final FeedRowMapper FEED_ROW_MAPPER = new FeedRowMapper();
     private final JdbcTemplate jdbcTemplate;
+    private final FeedWriter feedWriter;
+    private final int celebrityFollowers;
 
-    public FeedDbStorage(JdbcTemplate jdbcTemplate) {
+    public FeedDbStorage(JdbcTemplate jdbcTemplate, FeedWriter feedWriter,
+                         @Value("${filmorate.timeline.celebrity-followers:1000}") int celebrityFollowers) {
         this.jdbcTemplate = jdbcTemplate;
+        this.feedWriter = feedWriter;
+        this.celebrityFollowers = celebrityFollowers;
     }
 
 
     @Override
     public void saveAddFriend(Long userId, Long friendId) {
-        jdbcTemplate.update(SAVE_ACTION, Instant.now().toEpochMilli(), userId, EventType.FRIEND.toString(), Operation
-                .ADD.toString(), friendId);
+        feedWriter.enqueue(userId, EventType.FRIEND, Operation.ADD, friendId);
     }
 
     @Override
     public void saveRemoveFriend(Long userId, Long friendId) {
-        jdbcTemplate.update(SAVE_ACTION, Instant.now().toEpochMilli(), userId, EventType.FRIEND.toString(),
-                Operation.REMOVE.toString(), friendId);
+        feedWriter.enqueue(userId, EventType.FRIEND, Operation.REMOVE, friendId);
     }
 
     @Override
     public void saveAddLike(Long userId, Long filmId) {
-        jdbcTemplate.update(SAVE_ACTION, Instant.now().toEpochMilli(), userId, EventType.LIKE.toString(), Operation
-                .ADD.toString(), filmId);
+        feedWriter.enqueue(userId, EventType.LIKE, Operation.ADD, filmId);
     }
 
     @Override
     public void saveRemoveLike(Long userId, Long filmId) {
-        jdbcTemplate.update(SAVE_ACTION, Instant.now().toEpochMilli(), userId, EventType.LIKE.toString(), Operation
-                .REMOVE.toString(), filmId);
+        feedWriter.enqueue(userId, EventType.LIKE, Operation.REMOVE, filmId);
     }
 
     @Override
     public void saveRemoveReview(Long userId, Long filmId) {
-        jdbcTemplate.update(SAVE_ACTION, Instant.now().toEpochMilli(), userId, EventType.REVIEW.toString(), Operation
-                .REMOVE.toString(), filmId);
+        feedWriter.enqueue(userId, EventType.REVIEW, Operation.REMOVE, filmId);
     }
 
     @Override
     public void saveUpdateReview(Long userId, Long reviewId) {
-        jdbcTemplate.update(SAVE_ACTION, Instant.now().toEpochMilli(), userId, EventType.REVIEW.toString(), Operation
-                .UPDATE.toString(), reviewId);
+        feedWriter.enqueue(userId, EventType.REVIEW, Operation.UPDATE, reviewId);
     }
 
     @Override
     public void saveAddReview(Long userId, Long reviewId) {
-        jdbcTemplate.update(SAVE_ACTION, Instant.now().toEpochMilli(), userId, EventType.REVIEW.toString(),
-                Operation.ADD.toString(), reviewId);
+        feedWriter.enqueue(userId, EventType.REVIEW, Operation.ADD, reviewId);
     }
 
     @Override
     public void saveAddLikeReview(Long userId, Long reviewId) {
-        jdbcTemplate.update(SAVE_ACTION, Instant.now().toEpochMilli(), userId, EventType.REVIEW.toString(),
-                Operation.ADD.toString(), reviewId);
+        feedWriter.enqueue(userId, EventType.REVIEW, Operation.ADD, reviewId);
     }
 
     @Override
     public void saveRemoveLikeReview(Long userId, Long reviewId) {
-        jdbcTemplate.update(SAVE_ACTION, Instant.now().toEpochMilli(), userId, EventType.REVIEW.toString(),
-                Operation.REMOVE.toString(), reviewId);
+        feedWriter.enqueue(userId, EventType.REVIEW, Operation.REMOVE, reviewId);
     }
 
     @Override
     public void saveAddDislikeReview(Long userId, Long reviewId) {
-        jdbcTemplate.update(SAVE_ACTION, Instant.now().toEpochMilli(), userId, EventType.REVIEW.toString(),
-                Operation.ADD.toString(), reviewId);
+        feedWriter.enqueue(userId, EventType.REVIEW, Operation.ADD, reviewId);
     }
 
     @Override
     public void saveRemoveDislikeReview(Long userId, Long reviewId) {
-        jdbcTemplate.update(SAVE_ACTION, Instant.now().toEpochMilli(), userId, EventType.REVIEW.toString(),
-                Operation.REMOVE.toString(), reviewId);
+        feedWriter.enqueue(userId, EventType.REVIEW, Operation.REMOVE, reviewId);
     }
 
     @Override
     public List<Feed> getFeeds(Long userId) {
-        return jdbcTemplate.query(GET_FEEDS, new FeedRowMapper(), userId);
+        //Запись ленты отложенная, поэтому сначала дописываются уже принятые события
+        feedWriter.flush();
+        return jdbcTemplate.query(GET_FEEDS, FEED_ROW_MAPPER, userId);
+    }
+
+    @Override
+    public List<Feed> getFeedsPage(Long userId, long beforeEventId, int limit) {
+        feedWriter.flush();
+        //Страница выбирается с конца по индексу (user_id, event_id), а отдаётся в хронологическом порядке
+        List<Feed> feeds = jdbcTemplate.query(GET_FEEDS_PAGE, FEED_ROW_MAPPER, userId, beforeEventId, limit);
+        Collections.reverse(feeds);
+        return feeds;
+    }
+
+    @Override
+    public List<Feed> getTimeline(Long userId, long beforeEventId, int limit) {
+        feedWriter.flush();
+        //События популярных авторов не рассылаются при записи, поэтому дочитываются из их лент:
+        //по limit последних событий каждого автора с конца индекса (user_id, event_id).
+        //Слияние идёт по id события, поэтому повтор события в обоих списках не страшен.
+        NavigableMap<Long, Feed> feeds = new TreeMap<>(Comparator.reverseOrder());
+        jdbcTemplate.query(GET_TIMELINE_PAGE, FEED_ROW_MAPPER, userId, beforeEventId, limit)
+                .forEach(feed -> feeds.put(feed.getEventId(), feed));
+
+        for (Long authorId : jdbcTemplate.queryForList(FIND_CELEBRITY_FOLLOWINGS, Long.class, userId,
+                celebrityFollowers)) {
+            jdbcTemplate.query(GET_FEEDS_PAGE, FEED_ROW_MAPPER, authorId, beforeEventId, limit)
+                    .forEach(feed -> feeds.put(feed.getEventId(), feed));
+        }
+
+        List<Feed> page = feeds.values().stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+        Collections.reverse(page);
+        return page;
     }
 }
@@ -28,4 +28,10 @@ public interface FeedStorage {
     void saveRemoveDislikeReview(Long userId, Long reviewId);
 
     List<Feed> getFeeds(Long userId);
+
+    //События пользователя с id меньше beforeEventId, не больше limit последних, по возрастанию id
+    List<Feed> getFeedsPage(Long userId, long beforeEventId, int limit);
+
+    //События друзей пользователя с id меньше beforeEventId, не больше limit последних, по возрастанию id
+    List<Feed> getTimeline(Long userId, long beforeEventId, int limit);
 }
@@ -0,0 +1,338 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.EventType;
+import ru.yandex.practicum.filmorate.model.Operation;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Отложенная запись ленты событий. События копятся в ограниченной очереди и пишутся отдельным потоком
+//пачками до flushSize строк, первое событие пачки ждёт не дольше flushMillis.
+//При заполненной очереди вызывающий поток ждёт свободного места, при остановке очередь дописывается.
+//Пачка пишется одной транзакцией; при ошибке запись повторяется с растущей паузой, и только после
+//MAX_ATTEMPTS неудач пачка отбрасывается с ошибкой в логе, чтение ленты после этого не блокируется.
+//В той же транзакции события пачки рассылаются в ленты друзей подписчиков автора (таблица timeline),
+//кроме событий популярных авторов (больше celebrityFollowers подписчиков) - их ленты друзей дочитывают
+//при запросе. Затронутые ленты сразу обрезаются до timelineMaxSize последних событий.
+//Подписки и отписки правят ленты в транзакции записи в friend (onFollow / onUnfollow). Строка автора
+//в users блокируется и там, и при рассылке, поэтому рассылка не разминается с изменением числа подписчиков.
+@Slf4j
+@Component
+public class FeedWriter {
+    private static final String SAVE_ACTION = "INSERT INTO feeds (timestamp, user_id, event_type, operation, " +
+            "entity_id) VALUES (?, ?, ?, ?, ?)";
+    //Авторы пачки блокируются по возрастанию id, как и при удалении пользователя
+    private static final String LOCK_AUTHORS = "SELECT user_id, followers FROM users WHERE user_id IN (:authors) " +
+            "ORDER BY user_id FOR UPDATE";
+    private static final String FAN_OUT = "SELECT user_id FROM FINAL TABLE (INSERT INTO timeline (user_id, event_id) " +
+            "SELECT fr.user_id, fe.event_id FROM feeds fe " +
+            "JOIN friend fr ON fr.friend_id = fe.user_id " +
+            "WHERE fe.event_id IN (:ids) AND fe.user_id IN (:authors))";
+    private static final String ADD_FOLLOWER = "UPDATE users SET followers = followers + 1 WHERE user_id = ?";
+    private static final String REMOVE_FOLLOWER = "UPDATE users SET followers = followers - 1 WHERE user_id = ?";
+    private static final String COUNT_FOLLOWERS = "SELECT followers FROM users WHERE user_id = ?";
+    private static final String BACKFILL_FOLLOWER = "MERGE INTO timeline (user_id, event_id) KEY (user_id, event_id) " +
+            "SELECT ?, event_id FROM feeds WHERE user_id = ? ORDER BY event_id DESC LIMIT ?";
+    private static final String BACKFILL = "MERGE INTO timeline (user_id, event_id) KEY (user_id, event_id) " +
+            "SELECT fr.user_id, fe.event_id FROM friend fr " +
+            "JOIN feeds fe ON fe.user_id = fr.friend_id " +
+            "WHERE fr.friend_id = ? AND fe.event_id >= COALESCE((SELECT event_id FROM feeds WHERE user_id = ? " +
+            "ORDER BY event_id DESC LIMIT 1 OFFSET ?), 0)";
+    private static final String DELETE_AUTHOR_EVENTS = "DELETE FROM timeline WHERE user_id = ? AND event_id IN " +
+            "(SELECT event_id FROM feeds WHERE user_id = ?)";
+    private static final String DELETE_ALL_AUTHOR_EVENTS = "DELETE FROM timeline WHERE event_id IN " +
+            "(SELECT event_id FROM feeds WHERE user_id = ?)";
+    private static final String FIND_FOLLOWERS = "SELECT user_id FROM friend WHERE friend_id = ?";
+    //Граница ищется по первичному ключу (user_id, event_id) только для ленты одного пользователя
+    private static final String TRIM_TIMELINE = "DELETE FROM timeline WHERE user_id = ? AND event_id < " +
+            "(SELECT event_id FROM timeline WHERE user_id = ? ORDER BY event_id DESC LIMIT 1 OFFSET ?)";
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long MAX_BACKOFF_MILLIS = 1_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate nmJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int flushSize;
+    private final int celebrityFollowers;
+    private final int timelineMaxSize;
+    private final long flushMillis;
+    private final BlockingQueue<FeedRecord> queue;
+    private final AtomicLong enqueued = new AtomicLong();
+    private final Object flushLock = new Object();
+    private long written;
+    private long dropped;
+    private volatile boolean running;
+    private volatile boolean flushRequested;
+    private Thread thread;
+
+    public FeedWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                      @Value("${filmorate.feed.flush-size:100}") int flushSize,
+                      @Value("${filmorate.feed.flush-millis:50}") long flushMillis,
+                      @Value("${filmorate.feed.queue-capacity:10000}") int queueCapacity,
+                      @Value("${filmorate.timeline.celebrity-followers:1000}") int celebrityFollowers,
+                      @Value("${filmorate.timeline.max-size:1000}") int timelineMaxSize) {
+        if (timelineMaxSize <= 0) {
+            throw new IllegalArgumentException("Размер ленты друзей должен быть положительным");
+        }
+
+        this.jdbcTemplate = jdbcTemplate;
+        this.nmJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.flushSize = flushSize;
+        this.celebrityFollowers = celebrityFollowers;
+        this.timelineMaxSize = timelineMaxSize;
+        this.flushMillis = flushMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "feed-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        thread.join(SHUTDOWN_TIMEOUT_MILLIS);
+
+        //Поток не успел или события пришли уже после его остановки
+        List<FeedRecord> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        writeWithRetry(rest);
+    }
+
+    public void enqueue(long userId, EventType eventType, Operation operation, long entityId) {
+        FeedRecord record = new FeedRecord(Instant.now().toEpochMilli(), userId, eventType, operation, entityId);
+
+        if (!running) {
+            write(List.of(record));
+            return;
+        }
+
+        try {
+            queue.put(record);
+            enqueued.incrementAndGet();
+
+            //Остановка могла начаться между проверкой и постановкой в очередь
+            if (!running && queue.remove(record)) {
+                write(List.of(record));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            write(List.of(record));
+        }
+    }
+
+    //Ждёт, пока будут обработаны все события, поставленные в очередь до вызова.
+    //Отброшенные за это время пачки могли принадлежать кому угодно, поэтому они только логируются.
+    public void flush() {
+        long target = enqueued.get();
+
+        synchronized (flushLock) {
+            long droppedBefore = dropped;
+
+            while (written + dropped < target && running) {
+                flushRequested = true;
+                try {
+                    flushLock.wait(flushMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+
+            if (dropped > droppedBefore) {
+                log.warn("Лента читается без {} не записанных строк", dropped - droppedBefore);
+            }
+        }
+    }
+
+    private void run() {
+        List<FeedRecord> batch = new ArrayList<>(flushSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                FeedRecord first = queue.poll(flushMillis, TimeUnit.MILLISECONDS);
+
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushMillis);
+                queue.drainTo(batch, flushSize - batch.size());
+
+                while (batch.size() < flushSize && !flushRequested && running) {
+                    FeedRecord next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, flushSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+
+            boolean saved = writeWithRetry(batch);
+            synchronized (flushLock) {
+                if (saved) {
+                    written += batch.size();
+                } else {
+                    dropped += batch.size();
+                }
+                flushRequested = false;
+                flushLock.notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    //Возвращает false, если пачку не удалось записать ни с одной попытки
+    private boolean writeWithRetry(List<FeedRecord> batch) {
+        long backoff = Math.max(flushMillis, 1);
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                write(batch);
+                return true;
+            } catch (RuntimeException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    log.error("Не удалось записать в ленту событий {} строк за {} попыток",
+                            batch.size(), attempt, e);
+                    return false;
+                }
+                log.warn("Не удалось записать в ленту событий {} строк, попытка {} из {}: {}",
+                        batch.size(), attempt, MAX_ATTEMPTS, e.getMessage());
+            }
+
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    //Пачка вместе с рассылкой вставляется целиком или не вставляется совсем, поэтому повтор не создаёт дублей
+    //и не теряет рассылку
+    private synchronized void write(List<FeedRecord> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Long> eventIds = save(batch);
+            Set<Long> authors = new TreeSet<>();
+            batch.forEach(record -> authors.add(record.userId));
+
+            List<Long> regular = new ArrayList<>();
+            nmJdbcTemplate.query(LOCK_AUTHORS, Map.of("authors", authors), rs -> {
+                if (rs.getInt("followers") <= celebrityFollowers) {
+                    regular.add(rs.getLong("user_id"));
+                }
+            });
+
+            if (!regular.isEmpty()) {
+                trim(new TreeSet<>(nmJdbcTemplate.queryForList(FAN_OUT,
+                        Map.of("ids", eventIds, "authors", regular), Long.class)));
+            }
+        });
+    }
+
+    //JDBC-пачка из одной команды, id событий для рассылки берутся из сгенерированных ключей
+    private List<Long> save(List<FeedRecord> batch) {
+        return jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(SAVE_ACTION, new String[]{"event_id"})) {
+                for (FeedRecord record : batch) {
+                    ps.setLong(1, record.timestamp);
+                    ps.setLong(2, record.userId);
+                    ps.setString(3, record.eventType.toString());
+                    ps.setString(4, record.operation.toString());
+                    ps.setLong(5, record.entityId);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                List<Long> eventIds = new ArrayList<>(batch.size());
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    while (keys.next()) {
+                        eventIds.add(keys.getLong(1));
+                    }
+                }
+                return eventIds;
+            }
+        });
+    }
+
+    //Вызывается в транзакции, добавившей строку в friend. Обычный автор сразу досылает новому подписчику
+    //последние события. Ставший популярным автор дочитывается при запросе, поэтому его события убираются
+    //из лент друзей.
+    public void onFollow(long userId, long authorId) {
+        jdbcTemplate.update(ADD_FOLLOWER, authorId);
+        int followers = jdbcTemplate.queryForObject(COUNT_FOLLOWERS, Integer.class, authorId);
+
+        if (followers <= celebrityFollowers) {
+            jdbcTemplate.update(BACKFILL_FOLLOWER, userId, authorId, timelineMaxSize);
+            trim(Set.of(userId));
+        } else if (followers == celebrityFollowers + 1) {
+            jdbcTemplate.update(DELETE_ALL_AUTHOR_EVENTS, authorId);
+        }
+    }
+
+    //Вызывается в транзакции, удалившей строку из friend, в том числе перед удалением пользователя.
+    //События автора убираются из ленты бывшего подписчика. Автор, переставший быть популярным, больше
+    //не дочитывается при запросе, поэтому его последние события досылаются всем оставшимся подписчикам.
+    public void onUnfollow(long userId, long authorId) {
+        jdbcTemplate.update(REMOVE_FOLLOWER, authorId);
+        int followers = jdbcTemplate.queryForObject(COUNT_FOLLOWERS, Integer.class, authorId);
+        jdbcTemplate.update(DELETE_AUTHOR_EVENTS, userId, authorId);
+
+        if (followers == celebrityFollowers) {
+            jdbcTemplate.update(BACKFILL, authorId, authorId, timelineMaxSize - 1);
+            trim(new TreeSet<>(jdbcTemplate.queryForList(FIND_FOLLOWERS, Long.class, authorId)));
+        }
+    }
+
+    private void trim(Set<Long> followers) {
+        int offset = timelineMaxSize - 1;
+        jdbcTemplate.batchUpdate(TRIM_TIMELINE, followers, followers.size(), (ps, userId) -> {
+            ps.setLong(1, userId);
+            ps.setLong(2, userId);
+            ps.setInt(3, offset);
+        });
+    }
+
+    @RequiredArgsConstructor
+    private static class FeedRecord {
+        private final long timestamp;
+        private final long userId;
+        private final EventType eventType;
+        private final Operation operation;
+        private final long entityId;
+    }
+}
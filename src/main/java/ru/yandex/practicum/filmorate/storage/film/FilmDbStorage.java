@@ -2,18 +2,21 @@ package ru.yandex.practicum.filmorate.storage.film;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Primary;
-import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
@@ -28,113 +31,101 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 @Primary
 public class FilmDbStorage implements FilmStorage {
-    public static final String FIND_BY_DIRECTORS_NAME_CONTAINING_IGNORE_CASE = "SELECT f.*, l.GENRE_ID, l.GENRE_NAME," +
-            " m.*, likes.COUNT_LIKE, d.* FROM DIRECTORS AS d " +
-            "LEFT JOIN film_director fd ON fd.director_id = d.director_id " +
-            "LEFT JOIN FILM AS f ON f.FILM_ID = fd.FILM_ID " +
-            "LEFT JOIN FILM_GENRE AS g ON f.FILM_ID = g.FILM_ID " +
-            "LEFT JOIN GENRE AS l ON g.GENRE_ID = l.GENRE_ID " +
+    public static final String GET_FILMS_BY_DIRECTOR_SORTED_BY_YEAR = "SELECT f.*, fm.mpa_id " +
+            "FROM film_director fd " +
+            "JOIN FILM AS f ON f.FILM_ID = fd.FILM_ID " +
             "LEFT JOIN FILM_MPA fm ON f.FILM_ID = fm.FILM_ID " +
-            "LEFT JOIN MPA AS m ON fm.MPA_ID = m.MPA_ID " +
-            "LEFT JOIN (SELECT FILM_ID, COUNT(USER_ID) AS COUNT_LIKE FROM LIKES GROUP BY FILM_ID) AS likes ON " +
-            "f.FILM_ID = likes.FILM_ID " +
-            "WHERE d.director_name ILIKE :part " +
-            "ORDER BY likes.COUNT_LIKE DESC";
-    public static final String FIND_BY_TITLE_CONTAINING_IGNORE_CASE = "SELECT f.*, l.GENRE_ID, l.GENRE_NAME, m.*," +
-            " likes.COUNT_LIKE FROM FILM AS f " +
-            "LEFT JOIN FILM_GENRE AS g ON f.FILM_ID = g.FILM_ID " +
-            "LEFT JOIN GENRE AS l ON g.GENRE_ID = l.GENRE_ID " +
-            "LEFT JOIN FILM_MPA fm ON f.FILM_ID = fm.FILM_ID " +
-            "LEFT JOIN MPA AS m ON fm.MPA_ID = m.MPA_ID " +
-            "LEFT JOIN (SELECT FILM_ID, COUNT(USER_ID) AS COUNT_LIKE FROM LIKES GROUP BY FILM_ID) AS likes ON " +
-            "f.FILM_ID = likes.FILM_ID " +
-            "WHERE f.name ILIKE :part " +
-            "ORDER BY likes.COUNT_LIKE DESC";
-    public static final String GET_FILMS_BY_DIRECTOR_SORTED_BY_YEAR = "SELECT f.*, l.GENRE_ID, l.GENRE_NAME, m.*," +
-            " likes.COUNT_LIKE, d.* FROM DIRECTORS AS d " +
-            "LEFT JOIN film_director fd ON fd.director_id = d.director_id " +
-            "LEFT JOIN FILM AS f ON f.FILM_ID = fd.FILM_ID " +
-            "LEFT JOIN FILM_GENRE AS g ON f.FILM_ID = g.FILM_ID " +
-            "LEFT JOIN GENRE AS l ON g.GENRE_ID = l.GENRE_ID " +
-            "LEFT JOIN FILM_MPA fm ON f.FILM_ID = fm.FILM_ID " +
-            "LEFT JOIN MPA AS m ON fm.MPA_ID = m.MPA_ID " +
-            "LEFT JOIN (SELECT FILM_ID, COUNT(USER_ID) AS COUNT_LIKE FROM LIKES GROUP BY FILM_ID) AS likes ON " +
-            "f.FILM_ID = likes.FILM_ID WHERE d.DIRECTOR_ID= ? " +
+            "WHERE fd.DIRECTOR_ID = ? " +
             "ORDER BY f.RELEASE_DATE";
-    public static final String GET_FILMS_BY_DIRECTOR_SORTED_BY_LIKES = "SELECT f.*, l.GENRE_ID, l.GENRE_NAME, m.*," +
-            " likes.COUNT_LIKE, d.* FROM DIRECTORS AS d " +
-            "LEFT JOIN film_director fd ON fd.director_id = d.director_id " +
-            "LEFT JOIN FILM AS f ON f.FILM_ID = fd.FILM_ID " +
-            "LEFT JOIN FILM_GENRE AS g ON f.FILM_ID = g.FILM_ID " +
-            "LEFT JOIN GENRE AS l ON g.GENRE_ID = l.GENRE_ID " +
+    public static final String GET_FILMS_BY_DIRECTOR_SORTED_BY_LIKES = "SELECT f.*, fm.mpa_id " +
+            "FROM film_director fd " +
+            "JOIN FILM AS f ON f.FILM_ID = fd.FILM_ID " +
             "LEFT JOIN FILM_MPA fm ON f.FILM_ID = fm.FILM_ID " +
-            "LEFT JOIN MPA AS m ON fm.MPA_ID = m.MPA_ID " +
-            "LEFT JOIN (SELECT FILM_ID, COUNT(USER_ID) AS COUNT_LIKE FROM LIKES GROUP BY FILM_ID) AS likes ON " +
-            "f.FILM_ID = likes.FILM_ID WHERE d.DIRECTOR_ID=? " +
-            "ORDER BY likes.COUNT_LIKE DESC";
-    public static final String DELETE_ALL_DIRECTORS_FROM_FILM = "DELETE FROM film_director WHERE film_id = ?";
-    public static final String ADD_DIRECTOR_TO_FILM = "INSERT INTO film_director (director_id, film_id) VALUES (?, ?)";
+            "WHERE fd.DIRECTOR_ID = ? " +
+            "ORDER BY f.LIKE_COUNT DESC, f.FILM_ID DESC";
+    public static final String ADD_DIRECTOR_TO_FILM = "INSERT INTO film_director (film_id, director_id) VALUES (?, ?)";
+    public static final String DELETE_DIRECTOR_FROM_FILM = "DELETE FROM film_director " +
+            "WHERE film_id = ? AND director_id = ?";
     private static final String INSERT_FILM = "INSERT INTO film(name,description,release_date,duration,rate)" +
-            " VALUES (?,?,?,?,?)";
+            " VALUES (?,?,?,?,0)";
     private static final String FIND_ALL_FILMS = "SELECT f.film_id AS ID, f.name, f.RELEASE_DATE, F.DESCRIPTION," +
-            " f.duration, f.rate, m.mpa_id, mp.mpa_name FROM FILM F " +
+            " f.duration, f.rate, m.mpa_id FROM FILM F " +
             "LEFT JOIN FILM_MPA M ON F.FILM_ID = M.FILM_ID " +
-            "LEFT JOIN MPA MP ON M.MPA_ID = MP.MPA_ID " +
             "ORDER BY F.FILM_ID ";
 
+    private static final String FIND_FILMS_PAGE = "SELECT f.film_id AS ID, f.name, f.RELEASE_DATE, F.DESCRIPTION," +
+            " f.duration, f.rate, m.mpa_id FROM FILM F " +
+            "LEFT JOIN FILM_MPA M ON F.FILM_ID = M.FILM_ID " +
+            "WHERE F.FILM_ID > ? ORDER BY F.FILM_ID LIMIT ?";
+    private static final String FIND_FILMS_BY_IDS = "SELECT f.film_id AS ID, f.name, f.RELEASE_DATE, F.DESCRIPTION," +
+            " f.duration, f.rate, m.mpa_id FROM FILM F " +
+            "LEFT JOIN FILM_MPA M ON F.FILM_ID = M.FILM_ID " +
+            "WHERE F.FILM_ID IN (:ids)";
     private static final String FIND_FILMS_LIKED_BY_USER = "SELECT f.film_id AS ID, f.name, f.RELEASE_DATE," +
-            " F.DESCRIPTION, f.duration, f.rate, m.mpa_id, l.user_id, " +
-            "mp.mpa_name FROM FILM F " +
+            " F.DESCRIPTION, f.duration, f.rate, m.mpa_id, l.user_id FROM LIKES L " +
+            "JOIN FILM F ON F.FILM_ID = L.FILM_ID " +
             "LEFT JOIN FILM_MPA M ON F.FILM_ID = M.FILM_ID " +
-            "LEFT JOIN MPA MP ON M.MPA_ID = MP.MPA_ID " +
-            "LEFT JOIN LIKES L ON F.FILM_ID = L.FILM_ID  " +
-            "WHERE user_id = ?" +
-            "ORDER BY F.FILM_ID ";
-    private static final String FIND_GENRES =
-            "SELECT f.genre_id AS id, g.genre_name AS name " +
-                    "FROM film_genre f " +
-                    "LEFT JOIN  genre g ON f.genre_id = g.genre_id " +
-                    "WHERE f.film_id = ? " +
-                    "ORDER BY g.genre_id";
-    private static final String FIND_DIRECTORS =
-            "SELECT d.director_id AS id, d.director_name AS name " +
+            "WHERE L.USER_ID = ? " +
+            "ORDER BY F.FILM_ID";
+    private static final String FIND_GENRES_BY_FILM_IDS =
+            "SELECT film_id, genre_id FROM film_genre WHERE film_id IN (:ids)";
+    private static final String FIND_DIRECTORS_BY_FILM_IDS =
+            "SELECT fd.film_id, d.director_id, d.director_name " +
                     "FROM film_director fd " +
-                    "LEFT JOIN directors d ON fd.director_id = d.director_id " +
-                    "WHERE fd.film_id = ? " +
-                    "ORDER BY d.director_id";
-
-    private static final String FIND_LIKES =
-            "SELECT l.user_id, l.mark " +
+                    "JOIN directors d ON fd.director_id = d.director_id " +
+                    "WHERE fd.film_id IN (:ids)";
+    private static final String FIND_LIKES_BY_FILM_IDS =
+            "SELECT l.film_id, l.user_id, l.mark " +
                     "FROM likes l " +
-                    "WHERE l.film_id = ? ";
+                    "WHERE l.film_id IN (:ids)";
+    private static final int HYDRATION_CHUNK_SIZE = 1000;
     private static final String FIND_TOP_FILMS = "SELECT F.FILM_ID AS ID, F.NAME, F.RELEASE_DATE, F.DESCRIPTION," +
-            " F.DURATION, F.RATE, COUNT(L.USER_ID) AS liked, M.MPA_ID, MP.MPA_NAME " +
+            " F.DURATION, F.RATE, M.MPA_ID " +
             "FROM FILM F " +
             "LEFT JOIN FILM_MPA M ON F.FILM_ID = M.FILM_ID " +
-            "LEFT JOIN MPA MP ON M.MPA_ID = MP.MPA_ID " +
-            "LEFT JOIN LIKES L ON F.FILM_ID = L.FILM_ID  " +
-            "GROUP BY F.FILM_ID " +
-            "ORDER BY LIKED DESC LIMIT ?";
-    private static final String FIND_FILM_BY_ID = "SELECT * FROM film WHERE film_id = ?";
+            "ORDER BY F.LIKE_COUNT DESC, F.FILM_ID DESC LIMIT ?";
     private static final String FIND_FILM_FULL =
             "SELECT F.FILM_ID  AS ID, F.NAME, F.RELEASE_DATE, F.DESCRIPTION, F.DURATION, F.RATE, " +
-                    "M.mpa_id, MP.MPA_NAME  FROM FILM F " +
+                    "M.mpa_id FROM FILM F " +
                     "LEFT JOIN FILM_MPA M ON F.FILM_ID = M.FILM_ID " +
-                    "LEFT JOIN MPA MP ON M.MPA_ID = MP.mpa_id " +
                     "WHERE F.FILM_ID=? ";
-    private static final String INSERT_LIKE = "INSERT INTO likes (film_id, user_id, mark) VALUES (?,?,?)";
-    private static final String DELETE_LIKE = "DELETE FROM likes WHERE film_id=? AND user_id=? ";
+    private static final String UPSERT_LIKE = "SELECT mark FROM OLD TABLE " +
+            "(MERGE INTO likes (film_id, user_id, mark) KEY (film_id, user_id) VALUES (?,?,?))";
+    private static final String EXISTS_FILM_BY_ID = "SELECT EXISTS(SELECT 1 FROM film WHERE film_id = ?)";
+    private static final String DELETE_LIKE = "SELECT mark FROM OLD TABLE " +
+            "(DELETE FROM likes WHERE film_id=? AND user_id=?)";
+    private static final String FIND_ALL_MARKS = "SELECT user_id, film_id, mark FROM likes";
+    private static final String FIND_FILM_POPULARITY = "SELECT film_id, " +
+            "EXTRACT(YEAR FROM release_date) AS release_year, like_count FROM film";
+    private static final String FIND_FILM_TITLES = "SELECT film_id, name FROM film";
+    private static final String FIND_ALL_FILM_GENRES = "SELECT film_id, genre_id FROM film_genre";
+    private static final String FIND_ALL_FILM_DIRECTORS = "SELECT film_id, director_id FROM film_director";
+    private static final String DELETE_LIKES_BY_USER = "SELECT film_id, mark FROM OLD TABLE " +
+            "(DELETE FROM likes WHERE user_id=?)";
+    private static final String ADD_MARK_TO_FILM = "UPDATE film SET like_count = like_count + 1," +
+            " mark_sum = mark_sum + ?, rate = CAST(mark_sum + ? AS REAL) / (like_count + 1) WHERE film_id = ?";
+    private static final String CHANGE_MARK_OF_FILM = "UPDATE film SET mark_sum = mark_sum + ?," +
+            " rate = CAST(mark_sum + ? AS REAL) / like_count WHERE film_id = ?";
+    private static final String REMOVE_MARKS_FROM_FILM = "UPDATE film SET like_count = like_count - ?," +
+            " mark_sum = mark_sum - ?," +
+            " rate = CASE WHEN like_count > ? THEN CAST(mark_sum - ? AS REAL) / (like_count - ?) ELSE 0 END" +
+            " WHERE film_id = ?";
     private static final String DELETE_BY_ID = "DELETE FROM film WHERE film_id = ?";
+    private static final String FIND_LINKS_BY_FILM_ID = "SELECT 'mpa' AS link, mpa_id AS id FROM film_mpa " +
+            "WHERE film_id = ? " +
+            "UNION ALL SELECT 'genre', genre_id FROM film_genre WHERE film_id = ? " +
+            "UNION ALL SELECT 'director', director_id FROM film_director WHERE film_id = ?";
     private static final String DELETE_FILM_GENRE = "DELETE FROM film_genre WHERE film_id=? AND genre_id=? ";
     private static final String DELETE_FILM_RATING = "DELETE FROM film_mpa WHERE film_id=? AND mpa_id=? ";
     private static final String INSERT_FILM_RATING = "INSERT INTO FILM_mpa (film_id, mpa_id) VALUES (?,?)";
     private static final String INSERT_FILM_GENRE = "INSERT INTO FILM_GENRE (film_id, genre_id) VALUES (?,?)";
-    private static final String UPDATE_FILM = "UPDATE film SET name = ?, description = ?, release_date = ?," +
-            " duration = ?, rate = ? WHERE film_id = ?";
-    private static final String GET_DIRECTORS = "SELECT * FROM directors AS d" +
-            " JOIN film_director AS fd ON d.director_id = fd.director_id WHERE fd.film_id = ?";
+    private static final String UPDATE_FILM = "SELECT rate FROM FINAL TABLE (UPDATE film SET name = ?," +
+            " description = ?, release_date = ?, duration = ? WHERE film_id = ?)";
     private final JdbcTemplate jdbcTemplate;
     private final NamedParameterJdbcTemplate nmJdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final GenreStorage genreStorage;
+    private final MpaStorage mpaStorage;
 
 
     @Override
@@ -142,20 +133,13 @@ public class FilmDbStorage implements FilmStorage {
         try {
             Long idFilm = saveAndReturnId(film, INSERT_FILM);
             film.setId(idFilm);
+            film.setRate(0f);
             Mpa mpa = film.getMpa();
             updateFilmMpa(mpa.getId(), idFilm);
-            Set<Genre> genres = film.getGenres();
-
-            if (!genres.isEmpty()) {
-                updateFilmGenres(removeDoubles(genres), idFilm);
-            }
-
-            Set<Director> directors = film.getDirectors();
-
-            if (!directors.isEmpty()) {
-                addDirectorToFilm(film);
-            }
+            batchLinks(INSERT_FILM_GENRE, idFilm, genreIds(film.getGenres()));
+            batchLinks(ADD_DIRECTOR_TO_FILM, idFilm, directorIds(film.getDirectors()));
 
+            eventPublisher.publishEvent(new FilmEvent(film, Operation.ADD));
             return Optional.of(film);
         } catch (Exception e) {
             return Optional.empty();
@@ -171,7 +155,6 @@ public class FilmDbStorage implements FilmStorage {
             stmt.setString(2, film.getDescription());
             stmt.setDate(3, Date.valueOf(film.getReleaseDate()));
             stmt.setInt(4, film.getDuration());
-            stmt.setFloat(5, film.getRate() == null ? 0 : film.getRate());
             return stmt;
         }, keyHolder);
 
@@ -179,52 +162,68 @@ public class FilmDbStorage implements FilmStorage {
     }
 
     public Film getFilmFull(Long id) {
-        List<Film> films = jdbcTemplate.query(FIND_FILM_FULL, (rs, rowNum) -> rowMapperFilm(rs), id);
+        List<Film> films = hydrate(jdbcTemplate.query(FIND_FILM_FULL, (rs, rowNum) -> rowMapperFilm(rs), id));
         return films.isEmpty() ? null : films.get(0);
     }
 
     @Override
     public List<Film> getAll() {
-       return jdbcTemplate.query(FIND_ALL_FILMS, (rs, rowNum) -> rowMapperFilm(rs));
+        return hydrate(jdbcTemplate.query(FIND_ALL_FILMS, (rs, rowNum) -> rowMapperFilm(rs)));
     }
 
     @Override
-    public Optional<Film> update(Film film) {
-        if (getFilmFull(film.getId()) == null) {
-            return Optional.empty();
-        }
+    public List<Film> getPage(long afterId, int limit) {
+        return hydrate(jdbcTemplate.query(FIND_FILMS_PAGE, (rs, rowNum) -> rowMapperFilm(rs), afterId, limit));
+    }
 
+    //Связи фильма сравниваются с сохранёнными, выполняются только недостающие вставки и лишние удаления.
+    //Если жанры, режиссёры и рейтинг не менялись, запись идёт только в строку film.
+    //Средняя оценка считается по лайкам, значение от клиента не сохраняется и заменяется текущим.
+    @Override
+    @Transactional
+    public Optional<Film> update(Film film) {
         long filmId = film.getId();
-        jdbcTemplate.update(UPDATE_FILM, film.getName(), film.getDescription(),
-                film.getReleaseDate(), film.getDuration(), film.getRate(), filmId);
-        Film filmBefore = getFilmFull(filmId);
-        Mpa mpaBefore = filmBefore.getMpa();
-        Mpa mpaAfter = film.getMpa();
-
-        if (!Objects.equals(mpaAfter.getId(), mpaBefore.getId())) {
-            removeFilmMpa(mpaBefore, filmId);
-            updateFilmMpa(mpaAfter.getId(), filmId);
-        }
+        List<Float> rate = jdbcTemplate.queryForList(UPDATE_FILM, Float.class, film.getName(),
+                film.getDescription(), film.getReleaseDate(), film.getDuration(), filmId);
 
-        Set<Genre> genresBefore = filmBefore.getGenres();
-        Set<Long> genresAfter = removeDoubles(film.getGenres());
-
-        if (!genresBefore.isEmpty()) {
-            removeFilmGenres(genresBefore, filmId);
+        if (rate.isEmpty()) {
+            return Optional.empty();
         }
 
-        if (!genresAfter.isEmpty()) {
-            updateFilmGenres(genresAfter, filmId);
-        }
+        film.setRate(rate.get(0));
+
+        List<Long> mpaBefore = new ArrayList<>();
+        Set<Long> genresBefore = new HashSet<>();
+        Set<Long> directorsBefore = new HashSet<>();
+        jdbcTemplate.query(FIND_LINKS_BY_FILM_ID, rs -> {
+            switch (rs.getString("link")) {
+                case "mpa":
+                    mpaBefore.add(rs.getLong("id"));
+                    break;
+                case "genre":
+                    genresBefore.add(rs.getLong("id"));
+                    break;
+                default:
+                    directorsBefore.add(rs.getLong("id"));
+            }
+        }, filmId, filmId, filmId);
 
-        Set<Director> directors = film.getDirectors();
-        if (directors.isEmpty()) {
-            deleteAllDirectorsFromFilm(filmId);
+        Long mpaAfter = film.getMpa().getId();
 
+        if (!mpaBefore.contains(mpaAfter)) {
+            mpaBefore.forEach(mpaId -> jdbcTemplate.update(DELETE_FILM_RATING, filmId, mpaId));
+            updateFilmMpa(mpaAfter, filmId);
         }
 
-        addDirectorToFilm(film);
+        Set<Long> genresAfter = genreIds(film.getGenres());
+        batchLinks(DELETE_FILM_GENRE, filmId, difference(genresBefore, genresAfter));
+        batchLinks(INSERT_FILM_GENRE, filmId, difference(genresAfter, genresBefore));
+
+        Set<Long> directorsAfter = directorIds(film.getDirectors());
+        batchLinks(DELETE_DIRECTOR_FROM_FILM, filmId, difference(directorsBefore, directorsAfter));
+        batchLinks(ADD_DIRECTOR_TO_FILM, filmId, difference(directorsAfter, directorsBefore));
 
+        eventPublisher.publishEvent(new FilmEvent(film, Operation.UPDATE));
         return Optional.of(film);
     }
 
@@ -236,122 +235,177 @@ public class FilmDbStorage implements FilmStorage {
 
     @Override
     public void delete(Long id) {
-        jdbcTemplate.update(DELETE_BY_ID, id);
+        if (jdbcTemplate.update(DELETE_BY_ID, id) > 0) {
+            eventPublisher.publishEvent(new FilmEvent(Film.builder().id(id).build(), Operation.REMOVE));
+        }
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(EXISTS_FILM_BY_ID, Boolean.class, id));
     }
 
     @Override
     public Optional<Film> getById(Long id) {
-        List<Film> films = jdbcTemplate.query(FIND_FILM_FULL, (rs, rowNum) -> rowMapperFilm(rs), id);
+        List<Film> films = hydrate(jdbcTemplate.query(FIND_FILM_FULL, (rs, rowNum) -> rowMapperFilm(rs), id));
         return films.isEmpty() ? Optional.empty() : Optional.of(films.get(0));
     }
 
     @Override
-    public List<Film> getTheMostPopularFilms(int count) {
-        List<Film> films =  jdbcTemplate.query(FIND_TOP_FILMS, (rs, rowNum) -> rowMapperFilm(rs), count);
-        return films.stream()
-                .sorted(Comparator.comparing(Film::sumLikes).reversed())
+    public List<Film> getFilmsByIds(List<Long> ids) {
+        Map<Long, Film> films = new HashMap<>();
+
+        for (int from = 0; from < ids.size(); from += HYDRATION_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + HYDRATION_CHUNK_SIZE, ids.size()));
+            hydrate(nmJdbcTemplate.query(FIND_FILMS_BY_IDS, Collections.singletonMap("ids", chunk),
+                    (rs, rowNum) -> rowMapperFilm(rs)))
+                    .forEach(film -> films.put(film.getId(), film));
+        }
+
+        return ids.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
 
     @Override
+    public List<Film> getTheMostPopularFilms(int count) {
+        return hydrate(jdbcTemplate.query(FIND_TOP_FILMS, (rs, rowNum) -> rowMapperFilm(rs), count));
+    }
+
+    //Лайк - две команды: MERGE возвращает прежнюю оценку, если она была, и агрегаты фильма меняются на разницу.
+    //Повторный лайк с другой оценкой заменяет прежнюю, с той же - ничего не меняет.
+    @Override
+    @Transactional
     public void addLike(Long filmId, Long userId, Integer mark) {
-        Optional<Film> byId = getById(filmId);
+        List<Integer> previous = jdbcTemplate.queryForList(UPSERT_LIKE, Integer.class, filmId, userId, mark);
 
-        if (byId.isPresent()) {
-            Film film = byId.get();
-            film.setRate(film.getRate() + 1);
-            update(film);
+        if (previous.isEmpty()) {
+            jdbcTemplate.update(ADD_MARK_TO_FILM, mark, mark, filmId);
+            eventPublisher.publishEvent(new FilmLikeEvent(filmId, userId, mark, Operation.ADD));
+            return;
         }
 
-        jdbcTemplate.update(INSERT_LIKE, filmId, userId, mark);
+        int delta = mark - previous.get(0);
+
+        if (delta != 0) {
+            jdbcTemplate.update(CHANGE_MARK_OF_FILM, delta, delta, filmId);
+            eventPublisher.publishEvent(new FilmLikeEvent(filmId, userId, mark, Operation.UPDATE));
+        }
     }
 
     @Override
-    public void removeLike(Long filmId, Long userId) {
-        Optional<Film> byId = getById(filmId);
+    @Transactional
+    public boolean removeLike(Long filmId, Long userId) {
+        List<Integer> marks = jdbcTemplate.queryForList(DELETE_LIKE, Integer.class, filmId, userId);
 
-        if (byId.isPresent()) {
-            Film film = byId.get();
-            film.setRate(film.getRate() - 1);
-            update(film);
+        if (marks.isEmpty()) {
+            return false;
         }
 
-        jdbcTemplate.update(DELETE_LIKE, filmId, userId);
+        int count = marks.size();
+        int sum = marks.stream().mapToInt(Integer::intValue).sum();
+        jdbcTemplate.update(REMOVE_MARKS_FROM_FILM, count, sum, count, sum, count, filmId);
+        marks.forEach(mark -> eventPublisher.publishEvent(new FilmLikeEvent(filmId, userId, mark, Operation.REMOVE)));
+        return true;
     }
 
     @Override
-    public List<Film> getFilmsLikedByUser(Long userId) {
-        return jdbcTemplate.query(FIND_FILMS_LIKED_BY_USER, (rs, rowNum) -> rowMapperFilm(rs), userId);
-    }
-
-    private void addDirectorToFilm(Film film) {
-        List<Director> directors = new ArrayList<>(film.getDirectors());
+    @Transactional
+    public void removeLikesByUser(Long userId) {
+        Map<Long, List<Integer>> marksByFilm = new HashMap<>();
+        jdbcTemplate.query(DELETE_LIKES_BY_USER, rs -> {
+            marksByFilm.computeIfAbsent(rs.getLong("film_id"), id -> new ArrayList<>()).add(rs.getInt("mark"));
+        });
 
-        jdbcTemplate.batchUpdate(ADD_DIRECTOR_TO_FILM, new BatchPreparedStatementSetter() {
-            @Override
-            public void setValues(PreparedStatement ps, int i) throws SQLException {
-                ps.setLong(1, directors.get(i).getId());
-                ps.setLong(2, film.getId());
-            }
+        marksByFilm.forEach((filmId, marks) -> {
+            int count = marks.size();
+            int sum = marks.stream().mapToInt(Integer::intValue).sum();
+            jdbcTemplate.update(REMOVE_MARKS_FROM_FILM, count, sum, count, sum, count, filmId);
+            marks.forEach(mark -> eventPublisher.publishEvent(
+                    new FilmLikeEvent(filmId, userId, mark, Operation.REMOVE)));
+        });
+    }
 
-            @Override
-            public int getBatchSize() {
-                return directors.size();
-            }
+    @Override
+    public void forEachMark(MarkConsumer consumer) {
+        jdbcTemplate.query(FIND_ALL_MARKS, rs -> {
+            consumer.accept(rs.getLong("user_id"), rs.getLong("film_id"), rs.getInt("mark"));
         });
     }
 
-    private boolean deleteAllDirectorsFromFilm(long filmId) {
-        return jdbcTemplate.update(DELETE_ALL_DIRECTORS_FROM_FILM, filmId) > 0;
+    @Override
+    public void forEachPopularity(PopularityConsumer consumer) {
+        jdbcTemplate.query(FIND_FILM_POPULARITY, rs -> {
+            consumer.accept(rs.getLong("film_id"), rs.getInt("release_year"), rs.getLong("like_count"));
+        });
     }
 
-    private Set<Long> removeDoubles(Set<Genre> genres) {
-        return genres.stream().map(Genre::getId).collect(Collectors.toSet());
+    @Override
+    public void forEachTitle(TitleConsumer consumer) {
+        jdbcTemplate.query(FIND_FILM_TITLES, rs -> {
+            consumer.accept(rs.getLong("film_id"), rs.getString("name"));
+        });
     }
 
-    private boolean updateFilmMpa(Long mpaId, Long filmId) {
-        return jdbcTemplate.update(INSERT_FILM_RATING, filmId, mpaId) > 0;
+    @Override
+    public void forEachGenreLink(LinkConsumer consumer) {
+        jdbcTemplate.query(FIND_ALL_FILM_GENRES, rs -> {
+            consumer.accept(rs.getLong("film_id"), rs.getLong("genre_id"));
+        });
     }
 
-    private void updateFilmGenres(Set<Long> genreIds, long filmId) {
-        genreIds.forEach(g -> jdbcTemplate.update(INSERT_FILM_GENRE, filmId, g));
+    @Override
+    public void forEachDirectorLink(LinkConsumer consumer) {
+        jdbcTemplate.query(FIND_ALL_FILM_DIRECTORS, rs -> {
+            consumer.accept(rs.getLong("film_id"), rs.getLong("director_id"));
+        });
     }
 
-    private boolean removeFilmMpa(Mpa mpa, long filmId) {
-        return jdbcTemplate.update(DELETE_FILM_RATING, filmId, mpa.getId()) > 0;
+    @Override
+    public List<Film> getFilmsLikedByUser(Long userId) {
+        return hydrate(jdbcTemplate.query(FIND_FILMS_LIKED_BY_USER, (rs, rowNum) -> rowMapperFilm(rs), userId));
     }
 
-    private void removeFilmGenres(Set<Genre> genres, long filmId) {
-        genres.forEach(genre -> jdbcTemplate.update(DELETE_FILM_GENRE, filmId, genre.getId()));
+    //Одна пачка команд вида (film_id, id) на все связи фильма одного типа
+    private void batchLinks(String sql, long filmId, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(sql, ids.stream()
+                .map(id -> new Object[]{filmId, id})
+                .collect(Collectors.toList()));
     }
 
-    @Override
-    public List<Film> getFilmsByDirectorSortedByLikes(long directorId) {
-        return jdbcTemplate.query(GET_FILMS_BY_DIRECTOR_SORTED_BY_LIKES, (rs, rowNum) -> rowMapperFilm(rs), directorId);
+    private static Set<Long> difference(Set<Long> from, Set<Long> subtract) {
+        Set<Long> result = new HashSet<>(from);
+        result.removeAll(subtract);
+        return result;
     }
 
-    @Override
-    public List<Film> getFilmsByDirectorSortedByYear(long directorId) {
-        return jdbcTemplate.query(GET_FILMS_BY_DIRECTOR_SORTED_BY_YEAR, (rs, rowNum) -> rowMapperFilm(rs), directorId);
+    private Set<Long> genreIds(Set<Genre> genres) {
+        return genres.stream().map(Genre::getId).collect(Collectors.toSet());
     }
 
-    @Override
-    public List<Film> findByTitleContainingIgnoreCase(String query) {
-        return findCompatibility(query, FIND_BY_TITLE_CONTAINING_IGNORE_CASE);
+    private Set<Long> directorIds(Set<Director> directors) {
+        return directors.stream().map(Director::getId).collect(Collectors.toSet());
+    }
 
+    private boolean updateFilmMpa(Long mpaId, Long filmId) {
+        return jdbcTemplate.update(INSERT_FILM_RATING, filmId, mpaId) > 0;
     }
 
     @Override
-    public List<Film> findByDirectorsNameContainingIgnoreCase(String query) {
-        return findCompatibility(query, FIND_BY_DIRECTORS_NAME_CONTAINING_IGNORE_CASE);
+    public List<Film> getFilmsByDirectorSortedByLikes(long directorId) {
+        return hydrate(jdbcTemplate.query(GET_FILMS_BY_DIRECTOR_SORTED_BY_LIKES,
+                (rs, rowNum) -> rowMapperFilm(rs), directorId));
     }
 
-    public List<Film> findCompatibility(String query, String sql) {
-        String param = "%" + query + "%";
-        List<Film> films = nmJdbcTemplate.query(sql,
-                Collections.singletonMap("part", param),
-                (rs, rowNum) -> rowMapperFilm(rs));
-        return new ArrayList<>(films.stream().collect(Collectors.toMap(Film::getId, p -> p, (p, q) -> p)).values());
+    @Override
+    public List<Film> getFilmsByDirectorSortedByYear(long directorId) {
+        return hydrate(jdbcTemplate.query(GET_FILMS_BY_DIRECTOR_SORTED_BY_YEAR,
+                (rs, rowNum) -> rowMapperFilm(rs), directorId));
     }
 
     private Film rowMapperFilm(ResultSet rs) throws SQLException {
@@ -361,7 +415,8 @@ public class FilmDbStorage implements FilmStorage {
         LocalDate releaseDate = rs.getDate("release_date").toLocalDate();
         int duration = rs.getInt("duration");
         Float rate = rs.getFloat("rate");
-        Mpa mpa = new Mpa(rs.getLong("mpa_id"), rs.getString("mpa_name"));
+        long mpaId = rs.getLong("mpa_id");
+        Mpa mpa = mpaStorage.getById(mpaId).orElseGet(() -> new Mpa(mpaId, null));
 
         Film film = Film.builder()
                 .id(id)
@@ -373,38 +428,42 @@ public class FilmDbStorage implements FilmStorage {
                 .mpa(mpa)
                 .build();
 
-        Set<Genre> genres = new TreeSet<>(Comparator.comparing(Genre::getId));
+        return film;
+    }
 
-        SqlRowSet rsGenres = jdbcTemplate.queryForRowSet(FIND_GENRES, film.getId());
-        while (rsGenres.next()) {
-            Genre genre = Genre.builder()
-                    .id(rsGenres.getLong("genre_id"))
-                    .name(rsGenres.getString("genre_name"))
-                    .build();
-            genres.add(genre);
+    //Дозагружаю жанры, режиссёров и лайки одним запросом на связь для всей пачки фильмов.
+    //Названия жанров и рейтингов берутся из снимков справочников, из базы читаются только id
+    private List<Film> hydrate(List<Film> rows) {
+        Map<Long, Film> films = new LinkedHashMap<>();
+
+        for (Film film : rows) {
+            films.putIfAbsent(film.getId(), film);
         }
-        film.setGenres(genres);
 
-        Set<Director> directors = new HashSet<>();
+        List<Long> ids = new ArrayList<>(films.keySet());
 
-        SqlRowSet rsDirectors = jdbcTemplate.queryForRowSet(FIND_DIRECTORS, film.getId());
-        while (rsDirectors.next()) {
-            Director director = Director.builder()
-                    .id(rsDirectors.getLong("director_id"))
-                    .name(rsDirectors.getString("director_name"))
-                    .build();
-            directors.add(director);
+        for (int from = 0; from < ids.size(); from += HYDRATION_CHUNK_SIZE) {
+            Map<String, List<Long>> params = Collections.singletonMap("ids",
+                    ids.subList(from, Math.min(from + HYDRATION_CHUNK_SIZE, ids.size())));
 
-        }
-        film.setDirectors(directors);
+            nmJdbcTemplate.query(FIND_GENRES_BY_FILM_IDS, params, rs -> {
+                long genreId = rs.getLong("genre_id");
+                films.get(rs.getLong("film_id")).getGenres()
+                        .add(genreStorage.getById(genreId).orElseGet(() -> new Genre(genreId, null)));
+            });
 
-        SqlRowSet rsLikes = jdbcTemplate.queryForRowSet(FIND_LIKES, film.getId());
-        Map<Long, Integer> likes = new HashMap<>();
-        while (rsLikes.next()) {
-            likes.put(rsLikes.getLong("user_id"), rsLikes.getInt("mark"));
+            nmJdbcTemplate.query(FIND_DIRECTORS_BY_FILM_IDS, params, rs -> {
+                films.get(rs.getLong("film_id")).getDirectors().add(Director.builder()
+                        .id(rs.getLong("director_id"))
+                        .name(rs.getString("director_name"))
+                        .build());
+            });
+
+            nmJdbcTemplate.query(FIND_LIKES_BY_FILM_IDS, params, rs -> {
+                films.get(rs.getLong("film_id")).getUsersWhoLike().put(rs.getLong("user_id"), rs.getInt("mark"));
+            });
         }
-        film.setUsersWhoLike(likes);
 
-        return film;
+        return new ArrayList<>(films.values());
     }
 }
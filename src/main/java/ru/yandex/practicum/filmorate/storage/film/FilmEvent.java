@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.Value;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Operation;
+
+//Публикуется хранилищем после сохранения, обновления или удаления фильма
+@Value
+public class FilmEvent {
+    Film film;
+    Operation operation;
+}
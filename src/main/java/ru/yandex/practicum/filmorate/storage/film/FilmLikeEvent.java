@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.Value;
+import ru.yandex.practicum.filmorate.model.Operation;
+
+//Публикуется хранилищем после фиксации транзакции с лайком
+@Value
+public class FilmLikeEvent {
+    long filmId;
+    long userId;
+    int mark;
+    Operation operation;
+}
@@ -10,6 +10,9 @@ public interface FilmStorage {
 
     List<Film> getAll();
 
+    //Страница фильмов с id больше afterId в порядке id
+    List<Film> getPage(long afterId, int limit);
+
     Optional<Film> update(Film film);
 
     Optional<Film> updateById(Long id, Film film);
@@ -18,9 +21,29 @@ public interface FilmStorage {
 
     Optional<Film> getById(Long id);
 
+    boolean existsById(Long id);
+
+    List<Film> getFilmsByIds(List<Long> ids);
+
     void addLike(Long filmId, Long userId, Integer mark);
 
-    void removeLike(Long filmId, Long userId);
+    //Возвращает false, если лайка не было
+    boolean removeLike(Long filmId, Long userId);
+
+    void removeLikesByUser(Long userId);
+
+    //Передаёт все оценки из лайков одним проходом, без сборки фильмов и пользователей
+    void forEachMark(MarkConsumer consumer);
+
+    //Для построения индексов в памяти: по строке на фильм, без жанров, режиссёров и лайков
+    void forEachPopularity(PopularityConsumer consumer);
+
+    void forEachTitle(TitleConsumer consumer);
+
+    //Все пары фильм-жанр и фильм-режиссёр
+    void forEachGenreLink(LinkConsumer consumer);
+
+    void forEachDirectorLink(LinkConsumer consumer);
 
     List<Film> getTheMostPopularFilms(int count);
 
@@ -32,7 +55,23 @@ public interface FilmStorage {
 
     List<Film> getFilmsByDirectorSortedByYear(long directorId);
 
-    List<Film> findByDirectorsNameContainingIgnoreCase(String query);
-
-    List<Film> findByTitleContainingIgnoreCase(String query);
+    @FunctionalInterface
+    interface MarkConsumer {
+        void accept(long userId, long filmId, int mark);
+    }
+
+    @FunctionalInterface
+    interface PopularityConsumer {
+        void accept(long filmId, int releaseYear, long likes);
+    }
+
+    @FunctionalInterface
+    interface TitleConsumer {
+        void accept(long filmId, String name);
+    }
+
+    @FunctionalInterface
+    interface LinkConsumer {
+        void accept(long filmId, long linkedId);
+    }
 }
@@ -3,38 +3,46 @@ package ru.yandex.practicum.filmorate.storage.genre;
 import lombok.RequiredArgsConstructor;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
-import ru.yandex.practicum.filmorate.exceptions.GenreNotFoundException;
 import ru.yandex.practicum.filmorate.model.Genre;
 
+import javax.annotation.PostConstruct;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 
+//Жанры меняются только скриптом R__seed.sql, поэтому читаются один раз при старте
+//и отдаются из неизменяемого снимка в памяти. Объекты модели изменяемы, поэтому наружу уходят копии.
 @Repository
 @RequiredArgsConstructor
 public class GenreStorageDb implements GenreStorage {
-    private static final String FIND_ALL = "SELECT * FROM genre";
-    private static final String FIND_BY_ID = "SELECT * FROM genre WHERE genre_id=?";
+    private static final String FIND_ALL = "SELECT * FROM genre ORDER BY genre_id";
     private final JdbcTemplate jdbcTemplate;
+    private volatile Map<Long, Genre> genres = Collections.emptyMap();
+
+    @PostConstruct
+    public void refresh() {
+        Map<Long, Genre> snapshot = new LinkedHashMap<>();
+        jdbcTemplate.query(FIND_ALL, this::mapRowToGenre).forEach(genre -> snapshot.put(genre.getId(), genre));
+        genres = Collections.unmodifiableMap(snapshot);
+    }
 
     @Override
     public List<Genre> getAll() {
-        return jdbcTemplate.query(FIND_ALL, this::mapRowToGenre);
+        List<Genre> all = new ArrayList<>(genres.size());
+        genres.values().forEach(genre -> all.add(copy(genre)));
+        return all;
     }
 
     @Override
     public Optional<Genre> getById(Long id) {
-        int count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM GENRE WHERE GENRE_ID = ?",
-                Integer.class, id);
-        if (count == 0) {
-            return Optional.empty();
-        } else if (count == 1) {
-            Genre genre = jdbcTemplate.queryForObject(FIND_BY_ID, this::mapRowToGenre, id);
-            return Optional.of(genre);
-        } else {
-            throw new GenreNotFoundException("Not found");
-        }
+        return Optional.ofNullable(genres.get(id)).map(GenreStorageDb::copy);
+    }
+
+    private static Genre copy(Genre genre) {
+        return Genre.builder()
+                .id(genre.getId())
+                .name(genre.getName())
+                .build();
     }
 
     private Genre mapRowToGenre(ResultSet rs, long rowNum) throws SQLException {
@@ -0,0 +1,169 @@
+package ru.yandex.practicum.filmorate.storage.migration;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.EncodedResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+//Версионные миграции схемы. Скрипты V<номер>__<описание>.sql выполняются один раз по возрастанию номера,
+//повторяемые R__<описание>.sql - после них и только при изменении содержимого.
+//Выполненные скрипты и их контрольные суммы хранятся в таблице schema_history.
+//База со старой схемой без schema_history сначала доводится скриптом sql/upgrade/baseline.sql.
+@Slf4j
+@Component
+public class SchemaMigrator implements InitializingBean {
+    private static final String LOCATION = "classpath*:sql/migration/*.sql";
+    private static final String BASELINE_UPGRADE = "classpath:sql/upgrade/baseline.sql";
+    private static final Pattern VERSIONED = Pattern.compile("V(\\d+)__\\w+\\.sql");
+    private static final Pattern REPEATABLE = Pattern.compile("R__\\w+\\.sql");
+    private static final String TABLE_EXISTS = "SELECT EXISTS(SELECT 1 FROM INFORMATION_SCHEMA.TABLES " +
+            "WHERE TABLE_SCHEMA = CURRENT_SCHEMA AND TABLE_NAME = ?)";
+    private static final String CREATE_HISTORY = "CREATE TABLE IF NOT EXISTS schema_history (" +
+            "script VARCHAR(255) PRIMARY KEY, version INT, checksum BIGINT NOT NULL, " +
+            "installed_on TIMESTAMP NOT NULL, execution_time BIGINT NOT NULL)";
+    private static final String FIND_HISTORY = "SELECT script, checksum FROM schema_history";
+    private static final String FIND_CURRENT_VERSION = "SELECT COALESCE(MAX(version), 0) FROM schema_history";
+    private static final String SAVE_HISTORY = "MERGE INTO schema_history " +
+            "(script, version, checksum, installed_on, execution_time) KEY (script) " +
+            "VALUES (?, ?, ?, CURRENT_TIMESTAMP, ?)";
+
+    //Миграции выполняются напрямую через DataSource: JdbcTemplate приложения сам ждёт окончания миграций
+    private final JdbcTemplate jdbcTemplate;
+
+    public SchemaMigrator(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        migrate();
+    }
+
+    //Возвращает количество выполненных скриптов
+    public synchronized int migrate() {
+        if (!tableExists("SCHEMA_HISTORY") && tableExists("FILM")) {
+            run(new PathMatchingResourcePatternResolver().getResource(BASELINE_UPGRADE));
+            log.info("База создана до появления миграций, схема подготовлена к V1");
+        }
+
+        jdbcTemplate.execute(CREATE_HISTORY);
+        Map<String, Long> applied = new HashMap<>();
+        jdbcTemplate.query(FIND_HISTORY, rs -> {
+            applied.put(rs.getString("script"), rs.getLong("checksum"));
+        });
+        int currentVersion = jdbcTemplate.queryForObject(FIND_CURRENT_VERSION, Integer.class);
+        int executed = 0;
+
+        for (Script script : findScripts()) {
+            Long checksum = applied.get(script.name);
+
+            if (script.version == null) {
+                if (checksum == null || checksum != script.checksum) {
+                    execute(script);
+                    executed++;
+                }
+                continue;
+            }
+
+            if (checksum != null) {
+                if (checksum != script.checksum) {
+                    throw new IllegalStateException("Миграция " + script.name + " изменена после выполнения");
+                }
+                continue;
+            }
+
+            if (script.version <= currentVersion) {
+                throw new IllegalStateException("Миграция " + script.name +
+                        " старше текущей версии схемы " + currentVersion);
+            }
+
+            execute(script);
+            currentVersion = script.version;
+            executed++;
+        }
+
+        log.info("Версия схемы - {}, выполнено скриптов миграции - {}", currentVersion, executed);
+        return executed;
+    }
+
+    private boolean tableExists(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(TABLE_EXISTS, Boolean.class, table));
+    }
+
+    private void execute(Script script) {
+        long start = System.currentTimeMillis();
+        run(script.resource);
+        jdbcTemplate.update(SAVE_HISTORY, script.name, script.version, script.checksum,
+                System.currentTimeMillis() - start);
+        log.info("Выполнена миграция {}", script.name);
+    }
+
+    private void run(Resource resource) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            ScriptUtils.executeSqlScript(connection, new EncodedResource(resource, StandardCharsets.UTF_8));
+            return null;
+        });
+    }
+
+    //Сначала версионные скрипты по номеру, затем повторяемые по имени
+    private List<Script> findScripts() {
+        try {
+            Resource[] resources = new PathMatchingResourcePatternResolver().getResources(LOCATION);
+            List<Script> scripts = new ArrayList<>();
+
+            for (Resource resource : resources) {
+                String name = resource.getFilename();
+                Matcher matcher = VERSIONED.matcher(name);
+
+                if (matcher.matches()) {
+                    scripts.add(new Script(resource, name, Integer.valueOf(matcher.group(1)), checksum(resource)));
+                } else if (REPEATABLE.matcher(name).matches()) {
+                    scripts.add(new Script(resource, name, null, checksum(resource)));
+                } else {
+                    log.warn("Файл {} не похож на скрипт миграции и пропущен", name);
+                }
+            }
+
+            return scripts.stream()
+                    .sorted(Comparator.comparing((Script s) -> s.version == null)
+                            .thenComparing(s -> s.version == null ? 0 : s.version)
+                            .thenComparing(s -> s.name))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать скрипты миграции", e);
+        }
+    }
+
+    private static long checksum(Resource resource) throws IOException {
+        try (InputStream in = resource.getInputStream()) {
+            CRC32 crc = new CRC32();
+            crc.update(in.readAllBytes());
+            return crc.getValue();
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static class Script {
+        private final Resource resource;
+        private final String name;
+        private final Integer version;
+        private final long checksum;
+    }
+}
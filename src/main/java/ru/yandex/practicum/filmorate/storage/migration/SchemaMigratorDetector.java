@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.storage.migration;
+
+import org.springframework.boot.sql.init.dependency.AbstractBeansOfTypeDatabaseInitializerDetector;
+
+import java.util.Collections;
+import java.util.Set;
+
+//Регистрирует SchemaMigrator как инициализатор базы: бины с JdbcTemplate создаются после миграций
+public class SchemaMigratorDetector extends AbstractBeansOfTypeDatabaseInitializerDetector {
+    @Override
+    protected Set<Class<?>> getDatabaseInitializerBeanTypes() {
+        return Collections.singleton(SchemaMigrator.class);
+    }
+}
@@ -3,39 +3,46 @@ package ru.yandex.practicum.filmorate.storage.mpa;
 import lombok.RequiredArgsConstructor;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
-import ru.yandex.practicum.filmorate.exceptions.MpaNotFoundException;
 import ru.yandex.practicum.filmorate.model.Mpa;
 
+import javax.annotation.PostConstruct;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 
+//Рейтинги MPA меняются только скриптом R__seed.sql, поэтому читаются один раз при старте
+//и отдаются из неизменяемого снимка в памяти. Объекты модели изменяемы, поэтому наружу уходят копии.
 @Repository
 @RequiredArgsConstructor
 public class MpaStorageDb implements MpaStorage {
-    private static final String FIND_ALL = "SELECT * FROM MPA";
-    private static final String FIND_BY_ID = "SELECT * FROM MPA WHERE MPA_ID = ?";
+    private static final String FIND_ALL = "SELECT * FROM MPA ORDER BY MPA_ID";
     private final JdbcTemplate jdbcTemplate;
+    private volatile Map<Long, Mpa> ratings = Collections.emptyMap();
+
+    @PostConstruct
+    public void refresh() {
+        Map<Long, Mpa> snapshot = new LinkedHashMap<>();
+        jdbcTemplate.query(FIND_ALL, this::mapRowToMpa).forEach(mpa -> snapshot.put(mpa.getId(), mpa));
+        ratings = Collections.unmodifiableMap(snapshot);
+    }
 
     @Override
     public List<Mpa> getAll() {
-        return jdbcTemplate.query(FIND_ALL, this::mapRowToMpa);
+        List<Mpa> all = new ArrayList<>(ratings.size());
+        ratings.values().forEach(mpa -> all.add(copy(mpa)));
+        return all;
     }
 
     @Override
     public Optional<Mpa> getById(Long id) {
-        int count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM MPA WHERE MPA_ID = ?",
-                Integer.class, id);
-
-        if (count == 0) {
-            return Optional.empty();
-        } else if (count == 1) {
-            Mpa mpa = jdbcTemplate.queryForObject(FIND_BY_ID, this::mapRowToMpa, id);
-            return Optional.of(mpa);
-        } else {
-            throw new MpaNotFoundException("Not found");
-        }
+        return Optional.ofNullable(ratings.get(id)).map(MpaStorageDb::copy);
+    }
+
+    private static Mpa copy(Mpa mpa) {
+        return Mpa.builder()
+                .id(mpa.getId())
+                .name(mpa.getName())
+                .build();
     }
 
     private Mpa mapRowToMpa(ResultSet rs, long rowNum) throws SQLException {
@@ -46,6 +53,6 @@ public class MpaStorageDb implements MpaStorage {
     }
 
     public boolean containsMpa(long id) {
-        return jdbcTemplate.queryForRowSet(FIND_BY_ID, id).next();
+        return ratings.containsKey(id);
     }
 }
@@ -8,15 +8,14 @@ import java.util.Optional;
 public interface ReviewStorage {
     Optional<Review> addReview(Review review);
 
-    List<Review> getAllReviews();
-
     Optional<Review> getReviewById(Long id);
 
     void deleteReviewById(Long id);
 
     Optional<Review> updateReview(Review review);
 
-    List<Review> getReviewsByFilmId(Long filmId, int count);
+    //Самые полезные отзывы фильма или всех фильмов при filmId = null, начиная после отзыва afterReviewId
+    List<Review> getTopReviews(Long filmId, Long afterReviewId, int count);
 
     void addLike(Long reviewId, Long userId);
 
@@ -1,12 +1,14 @@
 package ru.yandex.practicum.filmorate.storage.review;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.Review;
 
 import java.sql.PreparedStatement;
@@ -20,19 +22,35 @@ public class ReviewStorageDb implements ReviewStorage {
     private static final String ADD_REVIEW = "INSERT INTO reviews" +
             " (content, is_positive, user_id, film_id, useful)" +
             " VALUES (?, ?, ?, ?, ?)";
-    private static final String GET_ALL_REVIEWS = "SELECT * FROM reviews";
     private static final String GET_REVIEW_BY_ID = "SELECT * FROM reviews WHERE review_id = ?";
     private static final String DELETE_REVIEW_BY_ID = "DELETE FROM reviews WHERE review_id = ?";
     private static final String UPDATE_REVIEW_PARTS = "UPDATE reviews " +
             "SET content = ?, is_positive = ?" +
             "WHERE review_id = ?";
-    private static final String GET_REVIEWS_BY_FILM_ID = "SELECT * FROM reviews WHERE film_id = ? LIMIT ?";
-    private static final String ADD_LIKE = "INSERT INTO review_likes (review_id, user_id) VALUES (?, ?)";
-    private static final String ADD_DISLIKE = "INSERT INTO review_dislikes (review_id, user_id) VALUES (?, ?)";
+    private static final String GET_TOP_REVIEWS = "SELECT * FROM reviews " +
+            "ORDER BY useful DESC, review_id LIMIT ?";
+    private static final String GET_REVIEW_USEFUL = "SELECT useful FROM reviews WHERE review_id = ?";
+    //Условие useful <= ? задаёт начало прохода по индексу, остальное отсекает отзывы до курсора
+    //с той же полезностью
+    private static final String GET_TOP_REVIEWS_AFTER = "SELECT * FROM reviews " +
+            "WHERE useful <= ? AND (useful < ? OR review_id > ?) " +
+            "ORDER BY useful DESC, review_id LIMIT ?";
+    //film_id в ORDER BY не меняет порядок, но без него H2 не видит, что индекс уже отсортирован.
+    //Индекс указан явно: иначе H2 выбирает индекс внешнего ключа по film_id и сортирует все отзывы фильма.
+    private static final String GET_TOP_REVIEWS_BY_FILM_ID = "SELECT * FROM reviews " +
+            "USE INDEX (reviews_film_useful_idx) WHERE film_id = ? " +
+            "ORDER BY film_id, useful DESC, review_id LIMIT ?";
+    private static final String GET_TOP_REVIEWS_BY_FILM_ID_AFTER = "SELECT * FROM reviews " +
+            "USE INDEX (reviews_film_useful_idx) WHERE film_id = ? AND useful <= ? AND (useful < ? OR review_id > ?) " +
+            "ORDER BY film_id, useful DESC, review_id LIMIT ?";
+    private static final String ADD_LIKE = "INSERT INTO review_likes (review_id, user_id) SELECT ?, ? " +
+            "WHERE NOT EXISTS (SELECT 1 FROM review_likes WHERE review_id = ? AND user_id = ?)";
+    private static final String ADD_DISLIKE = "INSERT INTO review_dislikes (review_id, user_id) SELECT ?, ? " +
+            "WHERE NOT EXISTS (SELECT 1 FROM review_dislikes WHERE review_id = ? AND user_id = ?)";
     private static final String REMOVE_LIKE = "DELETE FROM review_likes WHERE review_id = ? AND user_id = ?";
     private static final String REMOVE_DISLIKE = "DELETE FROM review_dislikes WHERE review_id = ? AND user_id = ?";
-    private static final String UPDATE_USEFUL = "UPDATE reviews " +
-            "SET useful = ? " +
+    private static final String ADD_USEFUL = "UPDATE reviews " +
+            "SET useful = useful + ? " +
             "WHERE review_id = ?";
     private final JdbcTemplate jdbcTemplate;
 
@@ -67,11 +85,6 @@ public class ReviewStorageDb implements ReviewStorage {
         return Optional.of(review);
     }
 
-    @Override
-    public List<Review> getAllReviews() {
-        return jdbcTemplate.query(GET_ALL_REVIEWS, reviewRowMapper);
-    }
-
     public Optional<Review> getReviewById(Long id) {
         try {
             Review review = jdbcTemplate.queryForObject(GET_REVIEW_BY_ID, new Object[]{id}, reviewRowMapper);
@@ -102,50 +115,71 @@ public class ReviewStorageDb implements ReviewStorage {
         return reviewById;
     }
 
+    //Порядок (useful DESC, review_id) совпадает с индексами из V4__reviews_by_usefulness.sql,
+    //поэтому страница читается с начала индекса, а не сортируется целиком
     @Override
-    public List<Review> getReviewsByFilmId(Long filmId, int count) {
-        return jdbcTemplate.query(
-                GET_REVIEWS_BY_FILM_ID,
-                new Object[]{filmId, count},
-                reviewRowMapper
-        );
-    }
-
-    @Override
-    public void addLike(Long reviewId, Long userId) {
-        updateUseful(reviewId, true);
-        jdbcTemplate.update(ADD_LIKE, reviewId, userId);
-    }
+    public List<Review> getTopReviews(Long filmId, Long afterReviewId, int count) {
+        if (afterReviewId == null) {
+            return filmId == null
+                    ? jdbcTemplate.query(GET_TOP_REVIEWS, reviewRowMapper, count)
+                    : jdbcTemplate.query(GET_TOP_REVIEWS_BY_FILM_ID, reviewRowMapper, filmId, count);
+        }
 
-    private void updateUseful(Long reviewId, boolean isIncrease) {
-        Optional<Review> reviewById = getReviewById(reviewId);
-        Review review = reviewById.get();
-        long useful = review.getUseful();
+        //Полезность курсора читается один раз и передаётся параметром, чтобы по ней сужался проход по индексу
+        List<Long> useful = jdbcTemplate.queryForList(GET_REVIEW_USEFUL, Long.class, afterReviewId);
 
-        if (isIncrease) {
-            useful++;
-        } else {
-            useful--;
+        if (useful.isEmpty()) {
+            return List.of();
         }
 
-        jdbcTemplate.update(UPDATE_USEFUL, useful, reviewId);
+        long cursor = useful.get(0);
+        return filmId == null
+                ? jdbcTemplate.query(GET_TOP_REVIEWS_AFTER, reviewRowMapper, cursor, cursor, afterReviewId, count)
+                : jdbcTemplate.query(GET_TOP_REVIEWS_BY_FILM_ID_AFTER, reviewRowMapper,
+                        filmId, cursor, cursor, afterReviewId, count);
+    }
+
+    //Голос пользователя за отзыв один: повторный голос ничего не меняет, противоположный заменяет прежний.
+    //Полезность меняется одним UPDATE на разницу, без чтения отзыва, поэтому параллельные голоса не теряются.
+    @Override
+    @Transactional
+    public void addLike(Long reviewId, Long userId) {
+        int delta = vote(ADD_LIKE, reviewId, userId) + jdbcTemplate.update(REMOVE_DISLIKE, reviewId, userId);
+        addUseful(reviewId, delta);
     }
 
     @Override
+    @Transactional
     public void addDislike(Long reviewId, Long userId) {
-        updateUseful(reviewId, false);
-        jdbcTemplate.update(ADD_DISLIKE, reviewId, userId);
+        int delta = vote(ADD_DISLIKE, reviewId, userId) + jdbcTemplate.update(REMOVE_LIKE, reviewId, userId);
+        addUseful(reviewId, -delta);
     }
 
     @Override
+    @Transactional
     public void removeLike(Long reviewId, Long userId) {
-        updateUseful(reviewId, false);
-        jdbcTemplate.update(REMOVE_LIKE, reviewId, userId);
+        addUseful(reviewId, -jdbcTemplate.update(REMOVE_LIKE, reviewId, userId));
     }
 
     @Override
+    @Transactional
     public void removeDislike(Long reviewId, Long userId) {
-        updateUseful(reviewId, true);
-        jdbcTemplate.update(REMOVE_DISLIKE, reviewId, userId);
+        addUseful(reviewId, jdbcTemplate.update(REMOVE_DISLIKE, reviewId, userId));
+    }
+
+    //Возвращает 1, если голос добавлен, и 0, если он уже был
+    private int vote(String sql, Long reviewId, Long userId) {
+        try {
+            return jdbcTemplate.update(sql, reviewId, userId, reviewId, userId);
+        } catch (DuplicateKeyException e) {
+            //Такой же голос одновременно вставил другой запрос
+            return 0;
+        }
+    }
+
+    private void addUseful(Long reviewId, int delta) {
+        if (delta != 0) {
+            jdbcTemplate.update(ADD_USEFUL, delta, reviewId);
+        }
     }
 }
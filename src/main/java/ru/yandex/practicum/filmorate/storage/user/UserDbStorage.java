@@ -3,22 +3,20 @@ package ru.yandex.practicum.filmorate.storage.user;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.feed.FeedWriter;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.*;
 
 @Repository
 @Qualifier("userDbStorage")
@@ -27,12 +25,19 @@ import java.util.stream.Collectors;
 public class UserDbStorage implements UserStorage {
     private static final String INSERT_USER = "INSERT INTO users(email,login,name,birthday) VALUES (?,?,?,?)";
     private static final String FIND_ALL_USERS = "SELECT * FROM users";
+    private static final String FIND_USERS_PAGE = "SELECT * FROM users WHERE user_id > ? ORDER BY user_id LIMIT ?";
     private static final String FIND_USER_BY_ID = "SELECT * FROM users WHERE user_id = ?";
-    private static final String ADD_FRIEND = "INSERT INTO friend (user_id, friend_id, confirmed) VALUES (?,?,?)";
+    private static final String EXISTS_USER_BY_ID = "SELECT EXISTS(SELECT 1 FROM users WHERE user_id = ?)";
+    private static final String FIND_FRIENDS_BY_USER_IDS = "SELECT user_id, friend_id FROM friend " +
+            "WHERE user_id IN (:ids)";
+    private static final int HYDRATION_CHUNK_SIZE = 1000;
+    private static final String ADD_FRIEND = "INSERT INTO friend (user_id, friend_id, confirmed) VALUES (?, ?, FALSE)";
     private static final String DELETE_FRIEND = "DELETE FROM friend WHERE user_id=? AND friend_id=?";
     private static final String FIND_FRIENDS_BY_ID = "SELECT * FROM users WHERE user_id IN " +
             "(SELECT friend_id FROM friend WHERE user_id=? ORDER BY friend_id) ORDER BY user_id";
     private static final String DELETE_USER = "DELETE FROM users WHERE user_id = ?";
+    private static final String DELETE_FOLLOWINGS = "SELECT friend_id FROM OLD TABLE " +
+            "(DELETE FROM friend WHERE user_id = ?) ORDER BY friend_id";
     private static final String FIND_COMMON_FRIENDS = "SELECT * FROM users " + "WHERE user_id IN " +
             "(SELECT friend_id FROM friend " +
             "WHERE user_id=? AND friend_id IN " +
@@ -43,6 +48,9 @@ public class UserDbStorage implements UserStorage {
     private static final String UPDATE_USER = "UPDATE users SET email = ?, login = ?, name = ?, birthday = ?" +
             " WHERE user_id = ?";
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate nmJdbcTemplate;
+    private final FeedWriter feedWriter;
+    private final UserMapper userMapper = new UserMapper();
 
     @Override
     public Optional<User> save(User user) {
@@ -73,7 +81,12 @@ public class UserDbStorage implements UserStorage {
 
     @Override
     public List<User> getAll() {
-        return jdbcTemplate.query(FIND_ALL_USERS, new UserMapper(jdbcTemplate));
+        return hydrate(jdbcTemplate.query(FIND_ALL_USERS, userMapper));
+    }
+
+    @Override
+    public List<User> getPage(long afterId, int limit) {
+        return hydrate(jdbcTemplate.query(FIND_USERS_PAGE, userMapper, afterId, limit));
     }
 
     @Override
@@ -95,57 +108,85 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
+    @Transactional
     public void delete(Long id) {
+        //Подписки удаляются явно, а не каскадом, чтобы поправить число подписчиков и ленты друзей
+        for (Long authorId : jdbcTemplate.queryForList(DELETE_FOLLOWINGS, Long.class, id)) {
+            feedWriter.onUnfollow(id, authorId);
+        }
         jdbcTemplate.update(DELETE_USER, id);
     }
 
     @Override
     public Optional<User> getById(Long id) {
-        SqlRowSet userRs = jdbcTemplate.queryForRowSet(FIND_USER_BY_ID, id);
-        if (userRs.next()) {
-            User user = jdbcTemplate.queryForObject(FIND_USER_BY_ID, new UserMapper(jdbcTemplate), id);
-            return Optional.of(user);
-        } else {
-            return Optional.empty();
-        }
+        return hydrate(jdbcTemplate.query(FIND_USER_BY_ID, userMapper, id)).stream().findFirst();
     }
 
-    public Optional<User> addFriend(Long userId, Long friendId) {
-        if (getById(userId).isEmpty() || getById(friendId).isEmpty()) {
-            return Optional.empty();
-        }
+    @Override
+    public boolean existsById(Long id) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(EXISTS_USER_BY_ID, Boolean.class, id));
+    }
 
-        jdbcTemplate.update(ADD_FRIEND, userId, friendId, false);
-        return Optional.ofNullable(getUser(friendId));
+    @Override
+    @Transactional
+    public boolean addFriend(Long userId, Long friendId) {
+        //Существование пользователей проверяют внешние ключи, повтор пары - первичный ключ: дружба уже есть.
+        //Прочие нарушения целостности при существующих пользователях пробрасываются дальше.
+        try {
+            jdbcTemplate.update(ADD_FRIEND, userId, friendId);
+            feedWriter.onFollow(userId, friendId);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            if (existsById(userId) && existsById(friendId)) {
+                throw e;
+            }
+            return false;
+        }
     }
 
     @Override
     public List<User> getCommonFriends(Long userId, Long otherUserId) {
-        return new ArrayList<>(jdbcTemplate
-                .query(FIND_COMMON_FRIENDS, new UserMapper(jdbcTemplate), userId, otherUserId));
+        return hydrate(jdbcTemplate.query(FIND_COMMON_FRIENDS, userMapper, userId, otherUserId));
     }
 
-    private User getUser(Long id) {
-        List<User> users = jdbcTemplate.query(FIND_USER_BY_ID, new UserMapper(jdbcTemplate), id);
-
-        if (users.isEmpty()) {
-            Optional.empty();
-        } else {
-            User user = users.get(0);
-            List<User> friends = getFriends(id);
-            user.setFriendsId(friends.stream().map(User::getId).collect(Collectors.toSet()));
-            return user;
+    @Override
+    @Transactional
+    public boolean removeFriend(Long userId, Long friendId) {
+        if (jdbcTemplate.update(DELETE_FRIEND, userId, friendId) > 0) {
+            feedWriter.onUnfollow(userId, friendId);
+            return true;
         }
-        return jdbcTemplate.queryForObject(FIND_USER_BY_ID, new UserMapper(jdbcTemplate), id);
-    }
 
-    @Override
-    public void removeFriend(Long userId, Long friendId) {
-        jdbcTemplate.update(DELETE_FRIEND, userId, friendId);
+        //Ничего не удалилось - проверяю, существуют ли пользователи
+        return existsById(userId) && existsById(friendId);
     }
 
     @Override
     public List<User> getFriends(Long userId) {
-        return new ArrayList<>(jdbcTemplate.query(FIND_FRIENDS_BY_ID, new UserMapper(jdbcTemplate), userId));
+        return hydrate(jdbcTemplate.query(FIND_FRIENDS_BY_ID, userMapper, userId));
+    }
+
+    //Дозагружаю id друзей одним запросом для всей пачки пользователей
+    private List<User> hydrate(List<User> rows) {
+        Map<Long, User> users = new LinkedHashMap<>();
+
+        for (User user : rows) {
+            users.putIfAbsent(user.getId(), user);
+        }
+
+        List<Long> ids = new ArrayList<>(users.keySet());
+
+        for (int from = 0; from < ids.size(); from += HYDRATION_CHUNK_SIZE) {
+            Map<String, List<Long>> params = Collections.singletonMap("ids",
+                    ids.subList(from, Math.min(from + HYDRATION_CHUNK_SIZE, ids.size())));
+
+            nmJdbcTemplate.query(FIND_FRIENDS_BY_USER_IDS, params, rs -> {
+                users.get(rs.getLong("user_id")).getFriendsId().add(rs.getLong("friend_id"));
+            });
+        }
+
+        return new ArrayList<>(users.values());
     }
 }
@@ -10,6 +10,9 @@ public interface UserStorage {
 
     List<User> getAll();
 
+    //Страница пользователей с id больше afterId в порядке id
+    List<User> getPage(long afterId, int limit);
+
     Optional<User> update(User user);
 
     Optional<User> updateById(Long id, User user);
@@ -18,11 +21,16 @@ public interface UserStorage {
 
     Optional<User> getById(Long id);
 
-    Optional<User> addFriend(Long userId, Long friendId);
+    //Проверка существования без загрузки пользователя и его друзей
+    boolean existsById(Long id);
+
+    //Возвращает false, если одного из пользователей нет
+    boolean addFriend(Long userId, Long friendId);
 
     List<User> getCommonFriends(Long userId, Long otherUserId);
 
-    void removeFriend(Long userId, Long friendId);
+    //Возвращает false, если одного из пользователей нет
+    boolean removeFriend(Long userId, Long friendId);
 
     List<User> getFriends(Long userId);
 }
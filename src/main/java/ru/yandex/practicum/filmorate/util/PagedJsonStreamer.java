@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.util;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import lombok.experimental.UtilityClass;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.ToLongFunction;
+
+//Отдаёт всю коллекцию одним JSON-массивом, вычитывая её страницами по id и сразу записывая в ответ,
+//поэтому в памяти одновременно держится только одна страница
+@UtilityClass
+public class PagedJsonStreamer {
+    private static final int PAGE_SIZE = 500;
+
+    public static <T> StreamingResponseBody stream(Gson gson,
+                                                   BiFunction<Long, Integer, List<T>> pageLoader,
+                                                   ToLongFunction<T> idGetter) {
+        return out -> {
+            JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.beginArray();
+            long after = 0;
+            List<T> page;
+
+            do {
+                page = pageLoader.apply(after, PAGE_SIZE);
+
+                for (T item : page) {
+                    gson.toJson(item, item.getClass(), writer);
+                    after = idGetter.applyAsLong(item);
+                }
+
+                writer.flush();
+            } while (page.size() == PAGE_SIZE);
+
+            writer.endArray();
+            writer.flush();
+        };
+    }
+}
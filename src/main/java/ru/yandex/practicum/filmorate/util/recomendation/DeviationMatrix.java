@@ -0,0 +1,179 @@
+package ru.yandex.practicum.filmorate.util.recomendation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+//Разреженная матрица отклонений Slope One на примитивах. Строка - фильм, в ней открытая адресация
+//с линейным пробированием: id второго фильма -> сумма разностей оценок и число общих оценок.
+//Оценки целые, поэтому сумма хранится в int и при удалении оценки вычитается без накопления ошибки.
+//Матрица антисимметрична по сумме, хранятся оба направления, чтобы строку можно было обойти целиком.
+//Id 0 занят под пустую ячейку, поэтому фильмы с таким id не принимаются.
+public class DeviationMatrix {
+    private final Map<Long, Row> rows = new HashMap<>();
+    private long size;
+
+    public void add(long from, long to, int diff) {
+        if (from == Row.EMPTY || to == Row.EMPTY) {
+            throw new IllegalArgumentException("Id фильма в матрице отклонений должен быть отличен от 0");
+        }
+
+        if (from == to) {
+            return;
+        }
+
+        row(from).add(to, diff, 1);
+        row(to).add(from, -diff, 1);
+        size++;
+    }
+
+    public void remove(long from, long to, int diff) {
+        if (from == to) {
+            return;
+        }
+
+        subtract(from, to, diff);
+        subtract(to, from, -diff);
+        size--;
+    }
+
+    //Обходит все фильмы, имеющие общие оценки с from
+    public void forEachInRow(long from, EntryConsumer consumer) {
+        Row row = rows.get(from);
+
+        if (row != null) {
+            row.forEach(consumer);
+        }
+    }
+
+    //Количество добавленных разностей: пара фильмов учитывается столько раз, сколько пользователей оценили оба
+    public long size() {
+        return size;
+    }
+
+    public void clear() {
+        rows.clear();
+        size = 0;
+    }
+
+    private Row row(long filmId) {
+        return rows.computeIfAbsent(filmId, id -> new Row());
+    }
+
+    private void subtract(long from, long to, int diff) {
+        Row row = rows.get(from);
+
+        if (row != null && row.add(to, -diff, -1) && row.size == 0) {
+            rows.remove(from);
+        }
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long filmId, int sum, int count);
+    }
+
+    private static class Row {
+        private static final long EMPTY = 0;
+        private static final int INITIAL_CAPACITY = 8;
+
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private int[] sums = new int[INITIAL_CAPACITY];
+        private int[] counts = new int[INITIAL_CAPACITY];
+        private int size;
+
+        //Возвращает true, если ячейка опустела и была удалена
+        private boolean add(long key, int sum, int count) {
+            int slot = find(key);
+
+            if (keys[slot] == EMPTY) {
+                if (count <= 0) {
+                    return false;
+                }
+
+                keys[slot] = key;
+                sums[slot] = sum;
+                counts[slot] = count;
+
+                if (++size * 4 > keys.length * 3) {
+                    resize(keys.length * 2);
+                }
+                return false;
+            }
+
+            sums[slot] += sum;
+            counts[slot] += count;
+
+            if (counts[slot] > 0) {
+                return false;
+            }
+
+            delete(slot);
+            return true;
+        }
+
+        private void forEach(EntryConsumer consumer) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    consumer.accept(keys[i], sums[i], counts[i]);
+                }
+            }
+        }
+
+        private int find(long key) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        //Удаление со сдвигом назад, чтобы не оставлять надгробий в цепочках пробирования
+        private void delete(int slot) {
+            int mask = keys.length - 1;
+            int gap = slot;
+            int next = (slot + 1) & mask;
+
+            while (keys[next] != EMPTY) {
+                int home = hash(keys[next]) & mask;
+
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    keys[gap] = keys[next];
+                    sums[gap] = sums[next];
+                    counts[gap] = counts[next];
+                    gap = next;
+                }
+                next = (next + 1) & mask;
+            }
+
+            keys[gap] = EMPTY;
+            sums[gap] = 0;
+            counts[gap] = 0;
+            size--;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldSums = sums;
+            int[] oldCounts = counts;
+            keys = new long[capacity];
+            sums = new int[capacity];
+            counts = new int[capacity];
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = find(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    sums[slot] = oldSums[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package ru.yandex.practicum.filmorate.util.recomendation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//Разреженная матрица оценок по пользователям. Для каждого пользователя - отсортированный массив id
+//фильмов и параллельный массив оценок, поиск оценки бинарный. Обратный индекс фильм -> пользователи
+//нужен, чтобы находить оценивших фильм без обхода всех строк.
+public class RatingMatrix {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final Map<Long, Row> rows = new HashMap<>();
+    private final Map<Long, Set<Long>> usersByFilm = new HashMap<>();
+    private long size;
+
+    public void put(long userId, long filmId, int mark) {
+        Row row = rows.computeIfAbsent(userId, id -> new Row());
+        int index = row.indexOf(filmId);
+
+        if (index >= 0) {
+            row.marks[index] = mark;
+            return;
+        }
+
+        row.insert(-index - 1, filmId, mark);
+        usersByFilm.computeIfAbsent(filmId, id -> new HashSet<>()).add(userId);
+        size++;
+    }
+
+    public boolean remove(long userId, long filmId) {
+        Row row = rows.get(userId);
+        int index = row == null ? -1 : row.indexOf(filmId);
+
+        if (index < 0) {
+            return false;
+        }
+
+        row.delete(index);
+        size--;
+
+        Set<Long> users = usersByFilm.get(filmId);
+        users.remove(userId);
+        if (users.isEmpty()) {
+            usersByFilm.remove(filmId);
+        }
+
+        if (row.size == 0) {
+            rows.remove(userId);
+        }
+        return true;
+    }
+
+    public boolean contains(long userId, long filmId) {
+        Row row = rows.get(userId);
+        return row != null && row.indexOf(filmId) >= 0;
+    }
+
+    //Оценка пользователя, только для проверенной через contains пары
+    public int get(long userId, long filmId) {
+        Row row = rows.get(userId);
+        return row.marks[row.indexOf(filmId)];
+    }
+
+    public void forEachMark(long userId, MarkConsumer consumer) {
+        Row row = rows.get(userId);
+
+        if (row == null) {
+            return;
+        }
+
+        for (int i = 0; i < row.size; i++) {
+            consumer.accept(row.filmIds[i], row.marks[i]);
+        }
+    }
+
+    //Копия, поэтому по результату можно удалять оценки
+    public List<Long> getUsersWhoRated(long filmId) {
+        return new ArrayList<>(usersByFilm.getOrDefault(filmId, Set.of()));
+    }
+
+    //Количество оценок
+    public long size() {
+        return size;
+    }
+
+    public void clear() {
+        rows.clear();
+        usersByFilm.clear();
+        size = 0;
+    }
+
+    @FunctionalInterface
+    public interface MarkConsumer {
+        void accept(long filmId, int mark);
+    }
+
+    private static class Row {
+        private long[] filmIds = new long[INITIAL_CAPACITY];
+        private int[] marks = new int[INITIAL_CAPACITY];
+        private int size;
+
+        private int indexOf(long filmId) {
+            return Arrays.binarySearch(filmIds, 0, size, filmId);
+        }
+
+        private void insert(int index, long filmId, int mark) {
+            if (size == filmIds.length) {
+                filmIds = Arrays.copyOf(filmIds, size * 2);
+                marks = Arrays.copyOf(marks, size * 2);
+            }
+
+            System.arraycopy(filmIds, index, filmIds, index + 1, size - index);
+            System.arraycopy(marks, index, marks, index + 1, size - index);
+            filmIds[index] = filmId;
+            marks[index] = mark;
+            size++;
+        }
+
+        private void delete(int index) {
+            System.arraycopy(filmIds, index + 1, filmIds, index, size - index - 1);
+            System.arraycopy(marks, index + 1, marks, index, size - index - 1);
+            size--;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.util.recomendation;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.storage.film.FilmEvent;
+import ru.yandex.practicum.filmorate.storage.film.FilmLikeEvent;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+//Взвешенный Slope One. Матрица отклонений хранит для пары фильмов сумму разностей оценок и число
+//пользователей, оценивших оба фильма, и пересчитывается на каждый лайк, а не на каждый запрос.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SlopeOneRecommender {
+    private final FilmStorage filmStorage;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final RatingMatrix ratings = new RatingMatrix();
+    private final DeviationMatrix deviations = new DeviationMatrix();
+
+    @PostConstruct
+    public void rebuild() {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            ratings.clear();
+            deviations.clear();
+            filmStorage.forEachMark(this::addMark);
+            log.info("Матрица отклонений Slope One построена, оценок - {}, разностей оценок - {}",
+                    ratings.size(), deviations.size());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    //Возвращает id неоценённых пользователем фильмов с положительным прогнозом, лучшие прогнозы первыми
+    public List<Long> recommend(long userId) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            Map<Long, double[]> predictions = new HashMap<>();
+
+            ratings.forEachMark(userId, (ratedId, mark) -> {
+                deviations.forEachInRow(ratedId, (filmId, sum, count) -> {
+                    if (ratings.contains(userId, filmId)) {
+                        return;
+                    }
+
+                    double[] prediction = predictions.computeIfAbsent(filmId, id -> new double[2]);
+                    prediction[0] += (double) mark * count - sum;
+                    prediction[1] += count;
+                });
+            });
+
+            Map<Long, Double> predicted = new HashMap<>();
+            predictions.forEach((filmId, prediction) -> predicted.put(filmId, prediction[0] / prediction[1]));
+
+            return predicted.entrySet().stream()
+                    .filter(e -> e.getValue() > 0)
+                    .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    public List<Long> getUsersWhoRated(long filmId) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return ratings.getUsersWhoRated(filmId);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    //Матрицы обновляются раньше остальных слушателей, чтобы кэш рекомендаций сбрасывался уже после них
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilmLike(FilmLikeEvent event) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (event.getOperation() != Operation.ADD) {
+                removeMark(event.getUserId(), event.getFilmId());
+            }
+
+            if (event.getOperation() != Operation.REMOVE) {
+                addMark(event.getUserId(), event.getFilmId(), event.getMark());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilm(FilmEvent event) {
+        if (event.getOperation() != Operation.REMOVE) {
+            return;
+        }
+
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            long filmId = event.getFilm().getId();
+            ratings.getUsersWhoRated(filmId).forEach(userId -> removeMark(userId, filmId));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void addMark(long userId, long filmId, int mark) {
+        removeMark(userId, filmId);
+        ratings.forEachMark(userId, (otherId, other) -> deviations.add(filmId, otherId, mark - other));
+        ratings.put(userId, filmId, mark);
+    }
+
+    private void removeMark(long userId, long filmId) {
+        if (!ratings.contains(userId, filmId)) {
+            return;
+        }
+
+        int mark = ratings.get(userId, filmId);
+        ratings.remove(userId, filmId);
+        ratings.forEachMark(userId, (otherId, other) -> deviations.remove(filmId, otherId, mark - other));
+    }
+}
@@ -0,0 +1,167 @@
+package ru.yandex.practicum.filmorate.util.search;
+
+import java.util.*;
+
+//Инвертированный индекс по триграммам для поиска подстроки без учёта регистра.
+//Для каждой триграммы хранится отсортированный массив id строк, где она встречается. Кандидаты - пересечение
+//списков триграмм запроса, начиная с самого короткого, затем каждый проверяется на вхождение целиком.
+//Запросы короче трёх символов проверяются перебором всех строк. Класс не потокобезопасен.
+public class TrigramIndex {
+    private static final int GRAM = 3;
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final Map<Long, String> texts = new HashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    public void put(long id, String text) {
+        remove(id);
+
+        if (text == null) {
+            return;
+        }
+
+        String normalized = normalize(text);
+        texts.put(id, normalized);
+
+        for (long gram : grams(normalized)) {
+            postings.computeIfAbsent(gram, g -> new Postings()).add(id);
+        }
+    }
+
+    public void remove(long id) {
+        String text = texts.remove(id);
+
+        if (text == null) {
+            return;
+        }
+
+        for (long gram : grams(text)) {
+            Postings list = postings.get(gram);
+
+            if (list.remove(id) && list.size == 0) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    //Id строк, содержащих query, в порядке возрастания
+    public List<Long> search(String query) {
+        String normalized = normalize(query);
+        List<Long> ids = new ArrayList<>();
+
+        if (normalized.length() < GRAM) {
+            texts.forEach((id, text) -> {
+                if (text.contains(normalized)) {
+                    ids.add(id);
+                }
+            });
+            Collections.sort(ids);
+            return ids;
+        }
+
+        List<Postings> lists = new ArrayList<>();
+
+        for (long gram : grams(normalized)) {
+            Postings list = postings.get(gram);
+
+            if (list == null) {
+                return ids;
+            }
+            lists.add(list);
+        }
+
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        Postings shortest = lists.get(0);
+
+        for (int i = 0; i < shortest.size; i++) {
+            long id = shortest.ids[i];
+
+            if (containsInAll(lists, id) && texts.get(id).contains(normalized)) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    //Строка в том виде, в каком она проиндексирована, или null
+    public String get(long id) {
+        return texts.get(id);
+    }
+
+    public int size() {
+        return texts.size();
+    }
+
+    public void clear() {
+        texts.clear();
+        postings.clear();
+    }
+
+    //Посимвольное приведение регистра, как в ILIKE: длина строки не меняется
+    public static String normalize(String text) {
+        char[] chars = text.toCharArray();
+
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+
+    //Различные триграммы строки, каждая упакована в long по 16 бит на символ
+    private static Set<Long> grams(String text) {
+        Set<Long> grams = new HashSet<>();
+
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+        return grams;
+    }
+
+    private static boolean containsInAll(List<Postings> lists, long id) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (lists.get(i).indexOf(id) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Postings {
+        private long[] ids = new long[INITIAL_CAPACITY];
+        private int size;
+
+        private int indexOf(long id) {
+            return Arrays.binarySearch(ids, 0, size, id);
+        }
+
+        private void add(long id) {
+            int index = indexOf(id);
+
+            if (index >= 0) {
+                return;
+            }
+
+            index = -index - 1;
+
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = id;
+            size++;
+        }
+
+        private boolean remove(long id) {
+            int index = indexOf(id);
+
+            if (index < 0) {
+                return false;
+            }
+
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+            return true;
+        }
+    }
+}
@@ -11,4 +11,4 @@ MERGE INTO genre (GENRE_ID, genre_name) key (GENRE_ID)
            (3, 'Мультфильм'),
            (4, 'Триллер'),
            (5, 'Документальный'),
-           (6, 'Боевик');
\ No newline at end of file
+           (6, 'Боевик');
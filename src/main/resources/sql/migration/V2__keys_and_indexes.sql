@@ -0,0 +1,42 @@
+-- Первичные ключи связующих таблиц: одна строка на пару, заодно индекс по первому столбцу
+ALTER TABLE likes ALTER COLUMN film_id SET NOT NULL;
+ALTER TABLE likes ALTER COLUMN user_id SET NOT NULL;
+ALTER TABLE likes ADD CONSTRAINT IF NOT EXISTS likes_pk PRIMARY KEY (film_id, user_id);
+
+ALTER TABLE friend ALTER COLUMN user_id SET NOT NULL;
+ALTER TABLE friend ALTER COLUMN friend_id SET NOT NULL;
+ALTER TABLE friend ADD CONSTRAINT IF NOT EXISTS friend_pk PRIMARY KEY (user_id, friend_id);
+
+ALTER TABLE film_genre ALTER COLUMN film_id SET NOT NULL;
+ALTER TABLE film_genre ALTER COLUMN genre_id SET NOT NULL;
+ALTER TABLE film_genre ADD CONSTRAINT IF NOT EXISTS film_genre_pk PRIMARY KEY (film_id, genre_id);
+
+ALTER TABLE film_director ALTER COLUMN film_id SET NOT NULL;
+ALTER TABLE film_director ALTER COLUMN director_id SET NOT NULL;
+ALTER TABLE film_director ADD CONSTRAINT IF NOT EXISTS film_director_pk PRIMARY KEY (film_id, director_id);
+
+ALTER TABLE film_mpa ALTER COLUMN film_id SET NOT NULL;
+ALTER TABLE film_mpa ALTER COLUMN mpa_id SET NOT NULL;
+ALTER TABLE film_mpa ADD CONSTRAINT IF NOT EXISTS film_mpa_pk PRIMARY KEY (film_id);
+
+ALTER TABLE review_likes ALTER COLUMN review_id SET NOT NULL;
+ALTER TABLE review_likes ALTER COLUMN user_id SET NOT NULL;
+ALTER TABLE review_likes ADD CONSTRAINT IF NOT EXISTS review_likes_pk PRIMARY KEY (review_id, user_id);
+
+ALTER TABLE review_dislikes ALTER COLUMN review_id SET NOT NULL;
+ALTER TABLE review_dislikes ALTER COLUMN user_id SET NOT NULL;
+ALTER TABLE review_dislikes ADD CONSTRAINT IF NOT EXISTS review_dislikes_pk PRIMARY KEY (review_id, user_id);
+
+-- Обратные направления: фильмы пользователя, друзья-подписчики, фильмы жанра и режиссёра
+CREATE INDEX IF NOT EXISTS likes_user_idx ON likes (user_id, film_id);
+CREATE INDEX IF NOT EXISTS friend_friend_idx ON friend (friend_id, user_id);
+CREATE INDEX IF NOT EXISTS film_genre_genre_idx ON film_genre (genre_id, film_id);
+CREATE INDEX IF NOT EXISTS film_director_director_idx ON film_director (director_id, film_id);
+CREATE INDEX IF NOT EXISTS film_mpa_mpa_idx ON film_mpa (mpa_id);
+CREATE INDEX IF NOT EXISTS review_likes_user_idx ON review_likes (user_id);
+CREATE INDEX IF NOT EXISTS review_dislikes_user_idx ON review_dislikes (user_id);
+
+-- Отзывы к фильму и лента пользователя в порядке событий
+CREATE INDEX IF NOT EXISTS reviews_film_idx ON reviews (film_id, review_id);
+CREATE INDEX IF NOT EXISTS reviews_user_idx ON reviews (user_id);
+CREATE INDEX IF NOT EXISTS feeds_user_idx ON feeds (user_id, event_id);
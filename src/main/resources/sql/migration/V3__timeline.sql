@@ -0,0 +1,9 @@
+-- Лента друзей: события, разосланные подписчикам автора при записи
+CREATE TABLE IF NOT EXISTS timeline
+(
+    user_id  BIGINT NOT NULL REFERENCES users (user_id) ON DELETE CASCADE,
+    event_id BIGINT NOT NULL REFERENCES feeds (event_id) ON DELETE CASCADE,
+    PRIMARY KEY (user_id, event_id)
+);
+
+CREATE INDEX IF NOT EXISTS timeline_event_idx ON timeline (event_id);
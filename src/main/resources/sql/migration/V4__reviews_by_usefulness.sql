@@ -0,0 +1,4 @@
+-- Отзывы отдаются по убыванию полезности, при равенстве по id: индекс отдаёт их уже в этом порядке
+CREATE INDEX IF NOT EXISTS reviews_film_useful_idx ON reviews (film_id, useful DESC, review_id);
+CREATE INDEX IF NOT EXISTS reviews_useful_idx ON reviews (useful DESC, review_id);
+DROP INDEX IF EXISTS reviews_film_idx;
@@ -0,0 +1,4 @@
+-- Число подписчиков автора: по нему лента друзей выбирает рассылку при записи или дочитывание при запросе
+ALTER TABLE users ADD COLUMN IF NOT EXISTS followers INT DEFAULT 0 NOT NULL;
+
+UPDATE users u SET followers = (SELECT COUNT(*) FROM friend f WHERE f.friend_id = u.user_id);
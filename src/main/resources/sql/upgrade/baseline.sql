@@ -0,0 +1,36 @@
+-- База, созданная до появления миграций: таблицы есть, schema_history нет.
+-- Скрипт приводит её к виду, с которого V1 и следующие миграции выполняются без ошибок.
+
+-- Агрегаты лайков, которых не было в исходной таблице film
+ALTER TABLE film ADD COLUMN IF NOT EXISTS like_count BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE film ADD COLUMN IF NOT EXISTS mark_sum BIGINT DEFAULT 0 NOT NULL;
+
+-- Строки связей без ключа и повторы пар: V2 делает эти столбцы первичными ключами
+DELETE FROM likes WHERE film_id IS NULL OR user_id IS NULL;
+DELETE FROM likes WHERE _ROWID_ NOT IN (SELECT MIN(_ROWID_) FROM likes GROUP BY film_id, user_id);
+
+DELETE FROM friend WHERE user_id IS NULL OR friend_id IS NULL;
+DELETE FROM friend WHERE _ROWID_ NOT IN (SELECT MIN(_ROWID_) FROM friend GROUP BY user_id, friend_id);
+
+DELETE FROM film_genre WHERE film_id IS NULL OR genre_id IS NULL;
+DELETE FROM film_genre WHERE _ROWID_ NOT IN (SELECT MIN(_ROWID_) FROM film_genre GROUP BY film_id, genre_id);
+
+DELETE FROM film_director WHERE film_id IS NULL OR director_id IS NULL;
+DELETE FROM film_director WHERE _ROWID_ NOT IN
+    (SELECT MIN(_ROWID_) FROM film_director GROUP BY film_id, director_id);
+
+DELETE FROM film_mpa WHERE film_id IS NULL OR mpa_id IS NULL;
+DELETE FROM film_mpa WHERE _ROWID_ NOT IN (SELECT MIN(_ROWID_) FROM film_mpa GROUP BY film_id);
+
+DELETE FROM review_likes WHERE review_id IS NULL OR user_id IS NULL;
+DELETE FROM review_likes WHERE _ROWID_ NOT IN
+    (SELECT MIN(_ROWID_) FROM review_likes GROUP BY review_id, user_id);
+
+DELETE FROM review_dislikes WHERE review_id IS NULL OR user_id IS NULL;
+DELETE FROM review_dislikes WHERE _ROWID_ NOT IN
+    (SELECT MIN(_ROWID_) FROM review_dislikes GROUP BY review_id, user_id);
+
+-- Агрегаты и средняя оценка по оставшимся лайкам
+UPDATE film f SET like_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id),
+                  mark_sum   = (SELECT COALESCE(SUM(l.mark), 0) FROM likes l WHERE l.film_id = f.film_id);
+UPDATE film SET rate = CASE WHEN like_count > 0 THEN CAST(mark_sum AS REAL) / like_count ELSE 0 END;
@@ -0,0 +1,134 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import ru.yandex.practicum.filmorate.adapter.LocalDateAdapter;
+import ru.yandex.practicum.filmorate.config.GsonResponseConverter;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+//Аллокации на один ответ GET /films: прежний путь (pretty-printed String, затем байты в поток)
+//против GsonResponseConverter, который пишет компактный JSON прямо в поток ответа. Не тест, запускается вручную:
+//java -cp target/classes:target/test-classes:<classpath> ...benchmark.JsonSerializationBenchmark 10000
+public class JsonSerializationBenchmark {
+    private static final int ITERATIONS = 20;
+    private static final Type FILM_LIST = new TypeToken<List<Film>>() {
+    }.getType();
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        List<Film> films = generateFilms(count);
+        Gson prettyGson = new GsonBuilder()
+                .setPrettyPrinting()
+                .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
+                .create();
+        Gson gson = new GsonBuilder()
+                .serializeNulls()
+                .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
+                .create();
+
+        measure("String + pretty printing", () -> {
+            CountingOutputStream out = new CountingOutputStream();
+            out.write(prettyGson.toJson(films).getBytes(StandardCharsets.UTF_8));
+            return out.count;
+        });
+        GsonResponseConverter converter = new GsonResponseConverter(gson, prettyGson);
+        measure("GsonResponseConverter", () -> {
+            CountingOutputStream out = new CountingOutputStream();
+            converter.write(films, FILM_LIST, MediaType.APPLICATION_JSON, new HttpOutputMessage() {
+                private final HttpHeaders headers = new HttpHeaders();
+
+                @Override
+                public OutputStream getBody() {
+                    return out;
+                }
+
+                @Override
+                public HttpHeaders getHeaders() {
+                    return headers;
+                }
+            });
+            return out.count;
+        });
+    }
+
+    private static void measure(String name, Response response) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            response.write();
+        }
+
+        long size = 0;
+        long before = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+
+        for (int i = 0; i < ITERATIONS; i++) {
+            size = response.write();
+        }
+
+        long allocated = (threads.getThreadAllocatedBytes(threadId) - before) / ITERATIONS;
+        long millis = (System.nanoTime() - start) / ITERATIONS / 1_000_000;
+        System.out.printf("%-26s ответ %6.1f МБ, аллокации %7.1f МБ на запрос, %4d мс%n",
+                name, size / 1024.0 / 1024.0, allocated / 1024.0 / 1024.0, millis);
+    }
+
+    private static List<Film> generateFilms(int count) {
+        List<Film> films = new ArrayList<>();
+
+        for (long id = 1; id <= count; id++) {
+            Film film = Film.builder()
+                    .id(id)
+                    .name("Фильм " + id)
+                    .description("Описание фильма номер " + id)
+                    .releaseDate(LocalDate.of(1990, 1, 1).plusDays(id))
+                    .duration(90 + (int) (id % 60))
+                    .rate(7.5f)
+                    .mpa(Mpa.builder().id(id % 5 + 1).name("PG-13").build())
+                    .build();
+            film.getGenres().add(Genre.builder().id(id % 6 + 1).name("Драма").build());
+            film.getDirectors().add(Director.builder().id(id % 100 + 1).name("Режиссёр").build());
+
+            for (long userId = 1; userId <= 5; userId++) {
+                film.getUsersWhoLike().put(userId * id, 8);
+            }
+            films.add(film);
+        }
+        return films;
+    }
+
+    @FunctionalInterface
+    private interface Response {
+        long write() throws IOException;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.film.FilmService;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+//Пропускная способность FilmService.addLike при параллельных лайках на базе в памяти. Пары фильм-пользователь
+//случайные, часть лайков - повторные с другой оценкой. Не тест, запускается вручную с аргументами
+//<фильмов> <пользователей> <секунд>:
+//java -cp target/classes:target/test-classes:<classpath> ...benchmark.LikeThroughputBenchmark 1000 1000 5
+public class LikeThroughputBenchmark {
+    private static final int[] THREADS = {1, 4, 16};
+
+    public static void main(String[] args) throws InterruptedException {
+        int films = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:mem:likes;DB_CLOSE_DELAY=-1",
+                        "logging.level.root=WARN")
+                .run()) {
+            FilmStorage filmStorage = context.getBean(FilmStorage.class);
+            UserStorage userStorage = context.getBean(UserStorage.class);
+            FilmService filmService = context.getBean(FilmService.class);
+            long firstFilm = fillFilms(filmStorage, films);
+            long firstUser = fillUsers(userStorage, users);
+
+            for (int threads : THREADS) {
+                LongAdder likes = new LongAdder();
+                long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+                List<Thread> workers = new ArrayList<>();
+
+                for (int i = 0; i < threads; i++) {
+                    Thread worker = new Thread(() -> {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+                        while (System.nanoTime() < deadline) {
+                            filmService.addLike(firstFilm + random.nextInt(films),
+                                    firstUser + random.nextInt(users), 1 + random.nextInt(10));
+                            likes.increment();
+                        }
+                    });
+                    workers.add(worker);
+                    worker.start();
+                }
+
+                for (Thread worker : workers) {
+                    worker.join();
+                }
+
+                System.out.printf("Потоков: %2d, лайков в секунду: %d%n", threads, likes.sum() / seconds);
+            }
+        }
+    }
+
+    private static long fillFilms(FilmStorage filmStorage, int count) {
+        long first = 0;
+
+        for (int i = 0; i < count; i++) {
+            Film film = filmStorage.save(Film.builder()
+                    .name("film" + i)
+                    .description("description")
+                    .releaseDate(LocalDate.EPOCH)
+                    .duration(100)
+                    .mpa(Mpa.builder().id(1L).build())
+                    .build()).orElseThrow();
+            first = i == 0 ? film.getId() : first;
+        }
+        return first;
+    }
+
+    private static long fillUsers(UserStorage userStorage, int count) {
+        long first = 0;
+
+        for (int i = 0; i < count; i++) {
+            User user = userStorage.save(User.builder()
+                    .email("user" + i + "@mail.ru")
+                    .login("user" + i)
+                    .birthday(LocalDate.EPOCH)
+                    .build()).orElseThrow();
+            first = i == 0 ? user.getId() : first;
+        }
+        return first;
+    }
+}
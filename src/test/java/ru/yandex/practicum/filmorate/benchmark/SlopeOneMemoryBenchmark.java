@@ -0,0 +1,110 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.util.recomendation.DeviationMatrix;
+
+import java.time.LocalDate;
+import java.util.*;
+
+//Сравнение памяти под матрицу отклонений: прежняя раскладка Map<Film, Map<Film, Double/Integer>>
+//против DeviationMatrix. Не тест, запускается вручную с аргументами <фильмов> <соседей у фильма>:
+//java -Xmx4g -cp target/classes:target/test-classes:<classpath> ...benchmark.SlopeOneMemoryBenchmark 5000 100
+public class SlopeOneMemoryBenchmark {
+    private static final int TARGET_FILMS = 50_000;
+
+    public static void main(String[] args) {
+        int films = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        int neighbours = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        long[][] pairs = generatePairs(films, neighbours);
+        System.out.printf("Фильмов: %d, пар с общими оценками: %d%n", films, pairs.length);
+
+        long before = usedMemory();
+        long start = System.nanoTime();
+        Object legacy = buildLegacy(films, pairs);
+        long legacyTime = System.nanoTime() - start;
+        long legacyBytes = usedMemory() - before;
+        report("Map<Film, Map<Film, ...>>", legacyBytes, legacyTime, pairs.length, films, neighbours);
+        Objects.requireNonNull(legacy);
+        legacy = null;
+
+        before = usedMemory();
+        start = System.nanoTime();
+        DeviationMatrix matrix = buildMatrix(pairs);
+        long matrixTime = System.nanoTime() - start;
+        long matrixBytes = usedMemory() - before;
+        report("DeviationMatrix", matrixBytes, matrixTime, pairs.length, films, neighbours);
+        System.out.printf("Пар в матрице: %d%n", matrix.size());
+    }
+
+    private static long[][] generatePairs(int films, int neighbours) {
+        Random random = new Random(42);
+        Set<Long> seen = new HashSet<>();
+        List<long[]> pairs = new ArrayList<>();
+
+        for (long from = 1; from <= films; from++) {
+            for (int i = 0; i < neighbours / 2; i++) {
+                long to = 1 + random.nextInt(films);
+
+                if (to != from && seen.add(Math.min(from, to) * (films + 1) + Math.max(from, to))) {
+                    pairs.add(new long[]{from, to, random.nextInt(19) - 9});
+                }
+            }
+        }
+        return pairs.toArray(new long[0][]);
+    }
+
+    private static Object buildLegacy(int films, long[][] pairs) {
+        Film[] byId = new Film[films + 1];
+
+        for (int id = 1; id <= films; id++) {
+            Map<Long, Integer> likes = new HashMap<>();
+            likes.put((long) id, 10);
+            byId[id] = Film.builder()
+                    .id((long) id)
+                    .name("film" + id)
+                    .description("description")
+                    .releaseDate(LocalDate.EPOCH)
+                    .duration(100)
+                    .usersWhoLike(likes)
+                    .build();
+        }
+
+        Map<Film, Map<Film, Double>> diff = new HashMap<>();
+        Map<Film, Map<Film, Integer>> freq = new HashMap<>();
+
+        for (long[] pair : pairs) {
+            Film from = byId[(int) pair[0]];
+            Film to = byId[(int) pair[1]];
+            diff.computeIfAbsent(from, f -> new HashMap<>()).merge(to, (double) pair[2], Double::sum);
+            diff.computeIfAbsent(to, f -> new HashMap<>()).merge(from, (double) -pair[2], Double::sum);
+            freq.computeIfAbsent(from, f -> new HashMap<>()).merge(to, 1, Integer::sum);
+            freq.computeIfAbsent(to, f -> new HashMap<>()).merge(from, 1, Integer::sum);
+        }
+        return List.of(byId, diff, freq);
+    }
+
+    private static DeviationMatrix buildMatrix(long[][] pairs) {
+        DeviationMatrix matrix = new DeviationMatrix();
+
+        for (long[] pair : pairs) {
+            matrix.add(pair[0], pair[1], (int) pair[2]);
+        }
+        return matrix;
+    }
+
+    private static void report(String name, long bytes, long nanos, int pairs, int films, int neighbours) {
+        double perPair = (double) bytes / pairs;
+        double target = perPair * TARGET_FILMS * (neighbours / 2.0);
+        System.out.printf("%-26s %8.1f МБ, %6.1f байт на пару, %6d мс, оценка для %d фильмов: %.1f МБ%n",
+                name, bytes / 1024.0 / 1024.0, perPair, nanos / 1_000_000, TARGET_FILMS, target / 1024 / 1024);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
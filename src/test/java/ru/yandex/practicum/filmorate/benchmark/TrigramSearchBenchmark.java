@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import ru.yandex.practicum.filmorate.util.search.TrigramIndex;
+
+import java.util.*;
+
+//Время поиска подстроки в TrigramIndex против перебора всех названий через contains, как делал ILIKE '%...%'.
+//Не тест, запускается вручную с аргументами <названий> <запросов>:
+//java -Xmx4g -cp target/classes:target/test-classes:<classpath> ...benchmark.TrigramSearchBenchmark 1000000 1000
+public class TrigramSearchBenchmark {
+    private static final String[] WORDS = {"ночь", "город", "тайна", "последний", "дом", "война", "любовь", "звезда",
+            "путь", "море", "тень", "огонь", "зима", "остров", "король", "охота", "сердце", "время", "игра", "мир"};
+
+    public static void main(String[] args) {
+        int titles = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        Random random = new Random(42);
+        String[] texts = new String[titles];
+
+        for (int i = 0; i < titles; i++) {
+            texts[i] = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+        }
+
+        long start = System.nanoTime();
+        TrigramIndex index = new TrigramIndex();
+
+        for (int i = 0; i < titles; i++) {
+            index.put(i + 1, texts[i]);
+        }
+        System.out.printf("Названий: %d, индекс построен за %d мс%n", titles, (System.nanoTime() - start) / 1_000_000);
+
+        String[] patterns = new String[queries];
+
+        for (int i = 0; i < queries; i++) {
+            patterns[i] = String.valueOf(random.nextInt(titles));
+        }
+
+        long found = 0;
+        start = System.nanoTime();
+
+        for (String pattern : patterns) {
+            found += index.search(pattern).size();
+        }
+        report("TrigramIndex", System.nanoTime() - start, queries, found);
+
+        found = 0;
+        start = System.nanoTime();
+
+        for (int i = 0; i < Math.min(queries, 20); i++) {
+            for (String text : texts) {
+                if (text.toLowerCase().contains(patterns[i])) {
+                    found++;
+                }
+            }
+        }
+        report("contains по всем", System.nanoTime() - start, Math.min(queries, 20), found);
+    }
+
+    private static void report(String name, long nanos, int queries, long found) {
+        System.out.printf("%-18s %10.3f мс на запрос, найдено %d%n", name, nanos / 1_000_000.0 / queries, found);
+    }
+}
@@ -5,10 +5,12 @@ import com.google.gson.GsonBuilder;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import ru.yandex.practicum.filmorate.adapter.LocalDateAdapter;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Mpa;
@@ -16,13 +18,18 @@ import ru.yandex.practicum.filmorate.model.Mpa;
 import java.net.URI;
 import java.time.LocalDate;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
 @AutoConfigureMockMvc
+@AutoConfigureTestDatabase
 class FilmControllerTest {
     private static final URI TEST_URL = URI.create("http://localhost:8080/films");
 
@@ -162,4 +169,71 @@ class FilmControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().json(jsonUpdate));
     }
+
+    @SneakyThrows
+    @Test
+    public void whenPageLimitIncorrect() {
+        mockMvc.perform(get(TEST_URL).param("after", "0").param("limit", "0"))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+    }
+
+    @SneakyThrows
+    @Test
+    public void whenLikeUnknownFilm() {
+        mockMvc.perform(put(TEST_URL + "/999/like/1"))
+                .andDo(print())
+                .andExpect(status().isNotFound());
+    }
+
+    @SneakyThrows
+    @Test
+    public void whenSearchLimitIncorrect() {
+        mockMvc.perform(get(TEST_URL + "/search")
+                        .param("query", "test")
+                        .param("by", "title,director")
+                        .param("limit", "0"))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+    }
+
+    @SneakyThrows
+    @Test
+    public void whenStream() {
+        MvcResult result = mockMvc.perform(get(TEST_URL).param("stream", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().string(startsWith("[")));
+    }
+
+    @SneakyThrows
+    @Test
+    public void whenPrettyRequested() {
+        Film build = Film.builder()
+                .name("pretty")
+                .description("test")
+                .mpa(Mpa.builder()
+                        .id(1L)
+                        .build())
+                .duration(100)
+                .releaseDate(LocalDate.of(2012, 12, 12))
+                .build();
+
+        mockMvc.perform(post(TEST_URL)
+                .content(gson.toJson(build))
+                .contentType(MediaType.APPLICATION_JSON));
+
+        mockMvc.perform(get(TEST_URL))
+                .andExpect(status().isOk())
+                .andExpect(content().string(not(containsString("\n"))))
+                .andExpect(content().string(containsString("\"releaseDate\":\"2012-12-12\"")));
+
+        mockMvc.perform(get(TEST_URL).param("pretty", "true"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("\"releaseDate\": \"2012-12-12\"")));
+    }
 }
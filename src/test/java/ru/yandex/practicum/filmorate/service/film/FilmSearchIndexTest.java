@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.director.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class FilmSearchIndexTest {
+    private final FilmSearchIndex searchIndex;
+    private final FilmStorage filmStorage;
+    private final DirectorStorage directorStorage;
+    private final UserStorage userStorage;
+
+    @BeforeEach
+    void beforeEach() {
+        directorStorage.addDirector(Director.builder().name("Квентин Тарантино").build());
+        directorStorage.addDirector(Director.builder().name("Гай Ричи").build());
+
+        addFilm("Криминальное чтиво", 1L);
+        addFilm("Большой куш", 2L);
+        addFilm("Джентльмены", 2L);
+        addFilm("Бесславные ублюдки", 1L);
+
+        userStorage.save(User.builder()
+                .email("user@mail.ru")
+                .login("user")
+                .birthday(LocalDate.EPOCH)
+                .build());
+        filmStorage.addLike(2L, 1L, 8);
+    }
+
+    @Test
+    void findByTitleRankedByLikes() {
+        assertThat(searchIndex.search("ЛЬ", true, false, 10)).containsExactly(2L, 3L, 1L);
+        assertThat(searchIndex.search("КУШ", true, false, 10)).containsExactly(2L);
+        assertThat(searchIndex.search("ые", true, false, 10)).containsExactly(4L);
+        assertThat(searchIndex.search("терминатор", true, false, 10)).isEmpty();
+    }
+
+    @Test
+    void findByDirectorName() {
+        assertThat(searchIndex.search("ричи", false, true, 10)).containsExactly(2L, 3L);
+        assertThat(searchIndex.search("тин", false, true, 10)).containsExactly(4L, 1L);
+        assertThat(searchIndex.search("и", false, true, 10)).containsExactly(2L, 4L, 3L, 1L);
+    }
+
+    @Test
+    void searchByTitleAndDirectorWithoutDoubles() {
+        assertThat(searchIndex.search("и", true, true, 10)).containsExactly(2L, 4L, 3L, 1L);
+        assertThat(searchIndex.search("ль", true, true, 10)).containsExactly(2L, 3L, 1L);
+        assertThat(searchIndex.search("ри", true, true, 2)).containsExactly(2L, 3L);
+        assertThat(searchIndex.search("ри", false, false, 10)).isEmpty();
+    }
+
+    @Test
+    void followsFilmAndDirectorChanges() {
+        Film film = filmStorage.getById(3L).orElseThrow();
+        film.setName("Гнев человеческий");
+        film.getDirectors().clear();
+        film.getDirectors().add(Director.builder().id(1L).build());
+        filmStorage.update(film);
+        filmStorage.delete(1L);
+        directorStorage.updateDirector(Director.builder().id(2L).name("Гай Стюарт Ричи").build());
+
+        assertThat(searchIndex.search("джентльмены", true, false, 10)).isEmpty();
+        assertThat(searchIndex.search("гнев", true, false, 10)).containsExactly(3L);
+        assertThat(searchIndex.search("тарантино", false, true, 10)).containsExactly(4L, 3L);
+        assertThat(searchIndex.search("стюарт", false, true, 10)).containsExactly(2L);
+
+        directorStorage.deleteDirector(1L);
+
+        assertThat(searchIndex.search("тарантино", false, true, 10)).isEmpty();
+    }
+
+    @Test
+    void rebuildKeepsResults() {
+        List<Long> byTitle = searchIndex.search("ль", true, false, 10);
+        List<Long> byDirector = searchIndex.search("и", false, true, 10);
+
+        searchIndex.rebuild();
+
+        assertThat(searchIndex.search("ль", true, false, 10)).isEqualTo(byTitle);
+        assertThat(searchIndex.search("и", false, true, 10)).isEqualTo(byDirector);
+    }
+
+    private void addFilm(String name, long directorId) {
+        Film film = Film.builder()
+                .name(name)
+                .description("description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(Mpa.builder().id(1L).build())
+                .build();
+        film.getDirectors().add(Director.builder().id(directorId).build());
+        filmStorage.save(film);
+    }
+}
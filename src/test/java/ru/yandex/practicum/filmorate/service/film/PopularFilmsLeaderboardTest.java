@@ -0,0 +1,97 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class PopularFilmsLeaderboardTest {
+    private final PopularFilmsLeaderboard leaderboard;
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+
+    @BeforeEach
+    void beforeEach() {
+        addFilm(1999, 1L);
+        addFilm(2005, 1L, 2L);
+        addFilm(2005, 2L);
+        addFilm(2010);
+
+        for (int i = 0; i < 3; i++) {
+            userStorage.save(User.builder()
+                    .email("user" + i + "@mail.ru")
+                    .login("user" + i)
+                    .birthday(LocalDate.EPOCH)
+                    .build());
+        }
+
+        filmStorage.addLike(2L, 1L, 8);
+        filmStorage.addLike(2L, 2L, 6);
+        filmStorage.addLike(3L, 1L, 9);
+        filmStorage.addLike(1L, 3L, 7);
+        filmStorage.addLike(1L, 2L, 7);
+        filmStorage.removeLike(1L, 2L);
+    }
+
+    @Test
+    void getTopMatchesSql() {
+        List<Long> sqlOrder = filmStorage.getTheMostPopularFilms(10).stream()
+                .map(Film::getId)
+                .collect(Collectors.toList());
+
+        assertThat(leaderboard.getTop(10, 0, 0)).isEqualTo(sqlOrder).containsExactly(2L, 3L, 1L, 4L);
+    }
+
+    @Test
+    void getTopByGenreAndYear() {
+        assertThat(leaderboard.getTop(10, 1L, 0)).containsExactly(2L, 1L);
+        assertThat(leaderboard.getTop(10, 0, 2005)).containsExactly(2L, 3L);
+        assertThat(leaderboard.getTop(1, 2L, 2005)).containsExactly(2L);
+        assertThat(leaderboard.getTop(10, 6L, 0)).isEmpty();
+    }
+
+    @Test
+    void rebuildKeepsOrder() {
+        filmStorage.delete(3L);
+        List<Long> before = leaderboard.getTop(10, 0, 0);
+
+        leaderboard.rebuild();
+
+        assertThat(leaderboard.getTop(10, 0, 0)).isEqualTo(before).containsExactly(2L, 1L, 4L);
+    }
+
+    private void addFilm(int year, Long... genreIds) {
+        Film film = Film.builder()
+                .name("film " + year)
+                .description("description")
+                .releaseDate(LocalDate.of(year, 1, 1))
+                .duration(100)
+                .mpa(Mpa.builder().id(1L).build())
+                .build();
+
+        for (Long genreId : genreIds) {
+            film.getGenres().add(Genre.builder().id(genreId).build());
+        }
+
+        filmStorage.save(film);
+    }
+}
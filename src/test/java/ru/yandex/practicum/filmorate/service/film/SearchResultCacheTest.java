@@ -0,0 +1,108 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.director.DirectorStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class SearchResultCacheTest {
+    private final FilmSearchIndex searchIndex;
+    private final SearchResultCache cache;
+    private final FilmStorage filmStorage;
+    private final DirectorStorage directorStorage;
+    private final UserStorage userStorage;
+
+    @BeforeEach
+    void beforeEach() {
+        directorStorage.addDirector(Director.builder().name("Квентин Тарантино").build());
+        directorStorage.addDirector(Director.builder().name("Гай Ричи").build());
+
+        addFilm("Криминальное чтиво", 1L);
+        addFilm("Большой куш", 2L);
+        addFilm("Джентльмены", 2L);
+
+        userStorage.save(User.builder()
+                .email("user@mail.ru")
+                .login("user")
+                .birthday(LocalDate.EPOCH)
+                .build());
+    }
+
+    @Test
+    void secondSearchIsServedFromCacheWithFreshOrder() {
+        assertThat(searchIndex.search("ЛЬ", true, false, 10)).containsExactly(3L, 2L, 1L);
+
+        filmStorage.addLike(1L, 1L, 8);
+
+        assertThat(searchIndex.search("ль", true, false, 10)).containsExactly(1L, 3L, 2L);
+        assertThat(cache.getStats())
+                .containsEntry("hits", 1L)
+                .containsEntry("misses", 1L)
+                .containsEntry("hitRatioPercent", 50L)
+                .containsEntry("size", 1L);
+    }
+
+    @Test
+    void titleChangeEvictsOnlyMatchingQueries() {
+        searchIndex.search("ль", true, false, 10);
+        searchIndex.search("ричи", false, true, 10);
+        searchIndex.search("гнев", true, true, 10);
+
+        Film film = filmStorage.getById(3L).orElseThrow();
+        film.setName("Гнев человеческий");
+        filmStorage.update(film);
+
+        assertThat(cache.getStats())
+                .containsEntry("evictions", 2L)
+                .containsEntry("size", 1L);
+        assertThat(searchIndex.search("ль", true, false, 10)).containsExactly(2L, 1L);
+        assertThat(searchIndex.search("гнев", true, true, 10)).containsExactly(3L);
+        assertThat(searchIndex.search("ричи", false, true, 10)).containsExactly(3L, 2L);
+        assertThat(cache.getStats()).containsEntry("hits", 1L);
+    }
+
+    @Test
+    void directorChangeEvictsOnlyDirectorQueries() {
+        searchIndex.search("ри", true, false, 10);
+        searchIndex.search("ричи", false, true, 10);
+        searchIndex.search("тарантино", false, true, 10);
+
+        directorStorage.updateDirector(Director.builder().id(2L).name("Гай Стюарт").build());
+
+        assertThat(cache.getStats())
+                .containsEntry("evictions", 1L)
+                .containsEntry("size", 2L);
+        assertThat(searchIndex.search("ричи", false, true, 10)).isEmpty();
+        assertThat(searchIndex.search("стюарт", false, true, 10)).containsExactly(3L, 2L);
+    }
+
+    private void addFilm(String name, long directorId) {
+        Film film = Film.builder()
+                .name(name)
+                .description("description")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100)
+                .mpa(Mpa.builder().id(1L).build())
+                .build();
+        film.getDirectors().add(Director.builder().id(directorId).build());
+        filmStorage.save(film);
+    }
+}
@@ -0,0 +1,105 @@
+package ru.yandex.practicum.filmorate.service.user;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class RecommendationCacheTest {
+    private final UserServiceImpl userService;
+    private final RecommendationCache recommendationCache;
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+
+    @BeforeEach
+    void beforeEach() {
+        for (int i = 1; i <= 3; i++) {
+            filmStorage.save(Film.builder()
+                    .name("film" + i)
+                    .description("description")
+                    .releaseDate(LocalDate.EPOCH)
+                    .duration(100)
+                    .mpa(Mpa.builder().id(1L).build())
+                    .build());
+            userStorage.save(User.builder()
+                    .email("user" + i + "@mail.ru")
+                    .login("user" + i)
+                    .birthday(LocalDate.EPOCH)
+                    .build());
+        }
+
+        filmStorage.addLike(1L, 1L, 8);
+        filmStorage.addLike(1L, 2L, 9);
+        filmStorage.addLike(2L, 2L, 10);
+    }
+
+    @Test
+    void secondRequestIsServedFromCache() {
+        assertThat(ids(userService.getRecommendations(1L))).containsExactly(2L);
+        assertThat(ids(userService.getRecommendations(1L))).containsExactly(2L);
+
+        assertThat(recommendationCache.getStats())
+                .containsEntry("hits", 1L)
+                .containsEntry("misses", 1L)
+                .containsEntry("size", 1L);
+    }
+
+    @Test
+    void markOnRatedFilmInvalidatesEntry() {
+        userService.getRecommendations(1L);
+        filmStorage.addLike(3L, 2L, 10);
+        filmStorage.addLike(1L, 3L, 9);
+
+        assertThat(ids(userService.getRecommendations(1L))).containsExactly(2L, 3L);
+        assertThat(recommendationCache.getStats()).containsEntry("misses", 2L);
+    }
+
+    @Test
+    void unrelatedMarkKeepsInFlightPut() {
+        long version = recommendationCache.getVersion();
+        filmStorage.addLike(3L, 3L, 7);
+        recommendationCache.put(1L, List.of(2L), version);
+
+        assertThat(recommendationCache.get(1L)).contains(List.of(2L));
+    }
+
+    @Test
+    void markDuringCalculationDiscardsPut() {
+        long version = recommendationCache.getVersion();
+        filmStorage.addLike(1L, 3L, 7);
+        recommendationCache.put(1L, List.of(2L), version);
+
+        assertThat(recommendationCache.get(1L)).isEmpty();
+    }
+
+    @Test
+    void refreshPrecomputesActiveUsers() {
+        recommendationCache.get(1L);
+        userService.refreshRecommendations();
+
+        assertThat(recommendationCache.get(1L)).contains(List.of(2L));
+        assertThat(recommendationCache.getStats()).containsEntry("refreshes", 1L);
+    }
+
+    private static List<Long> ids(List<Film> films) {
+        return films.stream().map(Film::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,141 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Проверяет по EXPLAIN, что частые запросы хранилищ идут по индексам, а не полным сканированием
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class QueryPlanTest {
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    void likesByFilm() {
+        assertIndexed("SELECT l.film_id, l.user_id, l.mark FROM likes l WHERE l.film_id IN (1, 2)");
+    }
+
+    @Test
+    void likesByUser() {
+        assertIndexed("SELECT f.film_id FROM likes l JOIN film f ON f.film_id = l.film_id " +
+                "WHERE l.user_id = 1 ORDER BY f.film_id");
+    }
+
+    @Test
+    void friendsByUser() {
+        assertIndexed("SELECT * FROM users WHERE user_id IN " +
+                "(SELECT friend_id FROM friend WHERE user_id = 1 ORDER BY friend_id) ORDER BY user_id");
+    }
+
+    @Test
+    void genresByFilm() {
+        assertIndexed("SELECT fg.film_id, g.genre_id, g.genre_name FROM film_genre fg " +
+                "JOIN genre g ON fg.genre_id = g.genre_id WHERE fg.film_id IN (1, 2)");
+    }
+
+    @Test
+    void filmsByDirector() {
+        assertIndexed("SELECT f.* FROM film_director fd JOIN film AS f ON f.film_id = fd.film_id " +
+                "WHERE fd.director_id = 1");
+    }
+
+    @Test
+    void linksByFilm() {
+        assertIndexed("SELECT 'mpa' AS link, mpa_id AS id FROM film_mpa WHERE film_id = 1 " +
+                "UNION ALL SELECT 'genre', genre_id FROM film_genre WHERE film_id = 1 " +
+                "UNION ALL SELECT 'director', director_id FROM film_director WHERE film_id = 1");
+        assertIndexed("DELETE FROM film_genre WHERE film_id = 1 AND genre_id = 1");
+        assertIndexed("DELETE FROM film_director WHERE film_id = 1 AND director_id = 1");
+    }
+
+    @Test
+    void mpaByFilm() {
+        assertIndexed("SELECT f.film_id, mp.mpa_name FROM film f " +
+                "LEFT JOIN film_mpa m ON f.film_id = m.film_id LEFT JOIN mpa mp ON m.mpa_id = mp.mpa_id " +
+                "WHERE f.film_id = 1");
+    }
+
+    @Test
+    void reviewsByFilm() {
+        String byFilm = "SELECT * FROM reviews USE INDEX (reviews_film_useful_idx) WHERE film_id = 1 " +
+                "ORDER BY film_id, useful DESC, review_id LIMIT 10";
+        assertIndexed(byFilm);
+        assertSortedByIndex(byFilm);
+
+        String afterCursor = "SELECT * FROM reviews USE INDEX (reviews_film_useful_idx) " +
+                "WHERE film_id = 1 AND useful <= 5 AND (useful < 5 OR review_id > 1) " +
+                "ORDER BY film_id, useful DESC, review_id LIMIT 10";
+        assertSortedByIndex(afterCursor);
+        assertIndexRange(afterCursor, "REVIEWS_FILM_USEFUL_IDX", "USEFUL <=");
+    }
+
+    @Test
+    void topReviews() {
+        assertSortedByIndex("SELECT * FROM reviews ORDER BY useful DESC, review_id LIMIT 10");
+
+        String afterCursor = "SELECT * FROM reviews WHERE useful <= 5 AND (useful < 5 OR review_id > 1) " +
+                "ORDER BY useful DESC, review_id LIMIT 10";
+        assertSortedByIndex(afterCursor);
+        assertIndexRange(afterCursor, "REVIEWS_USEFUL_IDX", "USEFUL <=");
+    }
+
+    @Test
+    void reviewVote() {
+        assertIndexed("DELETE FROM review_likes WHERE review_id = 1 AND user_id = 1");
+        assertIndexed("DELETE FROM review_dislikes WHERE review_id = 1 AND user_id = 1");
+    }
+
+    @Test
+    void feedsByUser() {
+        assertIndexed("SELECT * FROM feeds WHERE user_id = 1 ORDER BY event_id");
+    }
+
+    @Test
+    void feedsPage() {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN SELECT * FROM feeds WHERE user_id = 1 " +
+                "AND event_id < 100 ORDER BY event_id DESC LIMIT 10", String.class);
+
+        assertThat(plan).contains("FEEDS_USER_IDX").doesNotContain("tableScan");
+    }
+
+    @Test
+    void celebrityFollowings() {
+        assertIndexed("SELECT fr.friend_id FROM friend fr JOIN users u ON u.user_id = fr.friend_id " +
+                "WHERE fr.user_id = 1 AND u.followers > 1000");
+    }
+
+    //Граница ищется только среди строк одного пользователя, а их после обрезки не больше размера ленты
+    @Test
+    void trimTimeline() {
+        assertIndexed("DELETE FROM timeline WHERE user_id = 1 AND event_id < " +
+                "(SELECT event_id FROM timeline WHERE user_id = 1 ORDER BY event_id DESC LIMIT 1 OFFSET 999)");
+    }
+
+    //Строки идут в порядке индекса и не сортируются целиком перед LIMIT
+    private void assertSortedByIndex(String sql) {
+        assertThat(jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class)).contains("index sorted");
+    }
+
+    //Условие попадает в комментарий индекса, то есть задаёт границу прохода, а не проверяется на каждой строке
+    private void assertIndexRange(String sql, String index, String condition) {
+        assertThat(jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class))
+                .containsPattern("/\\* PUBLIC\\." + index + ":[^*]*" + Pattern.quote(condition));
+    }
+
+    //H2 помечает полный проход по таблице как tableScan, а проход по индексу без условия - комментарием
+    //с одним именем индекса, без двоеточия и условия после него
+    private void assertIndexed(String sql) {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class);
+
+        assertThat(plan).doesNotContain("tableScan");
+        assertThat(plan).doesNotContainPattern("/\\* PUBLIC\\.\\w+ \\*/");
+    }
+}
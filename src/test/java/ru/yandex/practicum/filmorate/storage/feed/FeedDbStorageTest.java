@@ -0,0 +1,263 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.EventType;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.Operation;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Порог популярности 1: автор с двумя подписчиками уже не рассылает события при записи.
+//Лента друзей хранит не больше двух последних событий.
+@SpringBootTest(properties = {"filmorate.timeline.celebrity-followers=1", "filmorate.timeline.max-size=2"})
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class FeedDbStorageTest {
+    private static final int USERS = 8;
+    private static final int EVENTS_PER_USER = 250;
+
+    private final FeedDbStorage feedDbStorage;
+    private final FeedWriter feedWriter;
+    private final JdbcTemplate jdbcTemplate;
+    private final UserStorage userStorage;
+
+    @Test
+    void getFeeds() {
+        feedDbStorage.saveAddFriend(1L, 2L);
+        feedDbStorage.saveAddLike(1L, 10L);
+        feedDbStorage.saveRemoveFriend(1L, 2L);
+
+        List<Feed> feeds = feedDbStorage.getFeeds(1L);
+
+        assertThat(feeds).extracting(Feed::getEventType)
+                .containsExactly(EventType.FRIEND, EventType.LIKE, EventType.FRIEND);
+        assertThat(feeds).extracting(Feed::getOperation)
+                .containsExactly(Operation.ADD, Operation.ADD, Operation.REMOVE);
+        assertThat(feeds).extracting(Feed::getEntityId).containsExactly(2L, 10L, 2L);
+    }
+
+    @Test
+    void getFeedsPage() {
+        for (long filmId = 1; filmId <= 5; filmId++) {
+            feedDbStorage.saveAddLike(1L, filmId);
+            feedDbStorage.saveAddLike(2L, filmId);
+        }
+
+        List<Feed> last = feedDbStorage.getFeedsPage(1L, Long.MAX_VALUE, 2);
+        List<Feed> previous = feedDbStorage.getFeedsPage(1L, last.get(0).getEventId(), 2);
+        List<Feed> first = feedDbStorage.getFeedsPage(1L, previous.get(0).getEventId(), 2);
+
+        assertThat(last).extracting(Feed::getEntityId).containsExactly(4L, 5L);
+        assertThat(previous).extracting(Feed::getEntityId).containsExactly(2L, 3L);
+        assertThat(first).extracting(Feed::getEntityId).containsExactly(1L);
+        assertThat(feedDbStorage.getFeedsPage(1L, first.get(0).getEventId(), 2)).isEmpty();
+    }
+
+    @Test
+    void getTimeline() {
+        long reader = createUser("reader");
+        long other = createUser("other");
+        long celebrity = createUser("celebrity");
+        long friend = createUser("friend");
+        userStorage.addFriend(reader, celebrity);
+        userStorage.addFriend(other, celebrity);
+        userStorage.addFriend(reader, friend);
+
+        feedDbStorage.saveAddLike(friend, 1L);
+        feedDbStorage.saveAddLike(celebrity, 2L);
+        feedDbStorage.saveAddLike(reader, 3L);
+        feedDbStorage.saveAddReview(friend, 4L);
+
+        assertThat(feedDbStorage.getTimeline(reader, Long.MAX_VALUE, 10))
+                .extracting(Feed::getEntityId).containsExactly(1L, 2L, 4L);
+        assertThat(feedDbStorage.getTimeline(reader, Long.MAX_VALUE, 2))
+                .extracting(Feed::getEntityId).containsExactly(2L, 4L);
+        assertThat(feedDbStorage.getTimeline(other, Long.MAX_VALUE, 10))
+                .extracting(Feed::getEntityId).containsExactly(2L);
+        assertThat(jdbcTemplate.queryForList("SELECT e.entity_id FROM timeline t " +
+                "JOIN feeds e ON e.event_id = t.event_id ORDER BY t.event_id", Long.class))
+                .containsExactly(1L, 4L);
+    }
+
+    @Test
+    void trimTimelines() {
+        long reader = createUser("reader");
+        long friend = createUser("friend");
+        userStorage.addFriend(reader, friend);
+
+        for (long filmId = 1; filmId <= 5; filmId++) {
+            feedDbStorage.saveAddLike(friend, filmId);
+        }
+        feedWriter.flush();
+
+        assertThat(feedDbStorage.getTimeline(reader, Long.MAX_VALUE, 10))
+                .extracting(Feed::getEntityId).containsExactly(4L, 5L);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM timeline", Integer.class)).isEqualTo(2);
+    }
+
+    @Test
+    void backfillWhenAuthorStopsBeingCelebrity() {
+        long reader = createUser("reader");
+        long other = createUser("other");
+        long author = createUser("author");
+        userStorage.addFriend(reader, author);
+        userStorage.addFriend(other, author);
+
+        feedDbStorage.saveAddLike(author, 1L);
+        feedDbStorage.saveAddLike(author, 2L);
+        feedDbStorage.saveAddLike(author, 3L);
+        feedWriter.flush();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM timeline", Integer.class)).isZero();
+
+        userStorage.removeFriend(other, author);
+        feedDbStorage.saveRemoveFriend(other, author);
+
+        assertThat(feedDbStorage.getTimeline(reader, Long.MAX_VALUE, 10))
+                .extracting(Feed::getEntityId).containsExactly(2L, 3L);
+        assertThat(timelineEntities(reader)).containsExactly(2L, 3L);
+    }
+
+    @Test
+    void followBackfillsRecentEvents() {
+        long reader = createUser("reader");
+        long friend = createUser("friend");
+
+        for (long filmId = 1; filmId <= 3; filmId++) {
+            feedDbStorage.saveAddLike(friend, filmId);
+        }
+        feedWriter.flush();
+        userStorage.addFriend(reader, friend);
+
+        assertThat(timelineEntities(reader)).containsExactly(2L, 3L);
+    }
+
+    @Test
+    void unfollowRemovesAuthorEvents() {
+        long reader = createUser("reader");
+        long friend = createUser("friend");
+        long other = createUser("other");
+        userStorage.addFriend(reader, friend);
+        userStorage.addFriend(reader, other);
+
+        feedDbStorage.saveAddLike(friend, 1L);
+        feedDbStorage.saveAddLike(other, 2L);
+        feedWriter.flush();
+        userStorage.removeFriend(reader, friend);
+
+        assertThat(feedDbStorage.getTimeline(reader, Long.MAX_VALUE, 10))
+                .extracting(Feed::getEntityId).containsExactly(2L);
+        assertThat(timelineEntities(reader)).containsExactly(2L);
+    }
+
+    @Test
+    void promotedAuthorIsReadOnRequest() {
+        long reader = createUser("reader");
+        long other = createUser("other");
+        long author = createUser("author");
+        userStorage.addFriend(reader, author);
+
+        feedDbStorage.saveAddLike(author, 1L);
+        feedWriter.flush();
+        userStorage.addFriend(other, author);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM timeline", Integer.class)).isZero();
+        assertThat(feedDbStorage.getTimeline(reader, Long.MAX_VALUE, 10))
+                .extracting(Feed::getEntityId).containsExactly(1L);
+        assertThat(feedDbStorage.getTimeline(other, Long.MAX_VALUE, 10))
+                .extracting(Feed::getEntityId).containsExactly(1L);
+    }
+
+    @Test
+    void deletedFollowerDemotesAuthor() {
+        long reader = createUser("reader");
+        long other = createUser("other");
+        long author = createUser("author");
+        userStorage.addFriend(reader, author);
+        userStorage.addFriend(other, author);
+
+        feedDbStorage.saveAddLike(author, 1L);
+        feedWriter.flush();
+        userStorage.delete(other);
+
+        assertThat(timelineEntities(reader)).containsExactly(1L);
+        assertThat(jdbcTemplate.queryForObject("SELECT followers FROM users WHERE user_id = ?", Integer.class,
+                author)).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentSaves() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(USERS);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (long userId = 1; userId <= USERS; userId++) {
+            long user = userId;
+            futures.add(executor.submit(() -> {
+                for (long filmId = 1; filmId <= EVENTS_PER_USER; filmId++) {
+                    feedDbStorage.saveAddLike(user, filmId);
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        for (long userId = 1; userId <= USERS; userId++) {
+            List<Long> filmIds = feedDbStorage.getFeeds(userId).stream()
+                    .map(Feed::getEntityId)
+                    .collect(Collectors.toList());
+
+            assertThat(filmIds).hasSize(EVENTS_PER_USER).isSorted();
+        }
+    }
+
+    @Test
+    void stop() throws InterruptedException {
+        for (long filmId = 1; filmId <= EVENTS_PER_USER; filmId++) {
+            feedDbStorage.saveAddLike(1L, filmId);
+        }
+
+        feedWriter.stop();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM feeds", Integer.class))
+                .isEqualTo(EVENTS_PER_USER);
+
+        feedDbStorage.saveRemoveLike(1L, 1L);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM feeds", Integer.class))
+                .isEqualTo(EVENTS_PER_USER + 1);
+    }
+
+    private List<Long> timelineEntities(long userId) {
+        return jdbcTemplate.queryForList("SELECT e.entity_id FROM timeline t " +
+                "JOIN feeds e ON e.event_id = t.event_id WHERE t.user_id = ? ORDER BY t.event_id", Long.class, userId);
+    }
+
+    private long createUser(String login) {
+        return userStorage.save(User.builder()
+                .login(login)
+                .name(login)
+                .email(login + "@mail.ru")
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build()).get().getId();
+    }
+}
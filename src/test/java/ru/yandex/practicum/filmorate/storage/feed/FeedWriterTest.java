@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.EventType;
+import ru.yandex.practicum.filmorate.model.Operation;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Отдельный FeedWriter поверх источника данных, который отказывает заданное число раз подряд
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class FeedWriterTest {
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final AtomicInteger failures = new AtomicInteger();
+    private FeedWriter feedWriter;
+
+    @BeforeEach
+    void beforeEach() {
+        DataSource failing = new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                if (failures.getAndUpdate(left -> Math.max(left - 1, 0)) > 0) {
+                    throw new SQLException("База недоступна");
+                }
+                return super.getConnection();
+            }
+        };
+        feedWriter = new FeedWriter(new JdbcTemplate(failing), new DataSourceTransactionManager(failing),
+                10, 5, 100, 1000, 1000);
+        feedWriter.start();
+    }
+
+    @AfterEach
+    void afterEach() throws InterruptedException {
+        failures.set(0);
+        feedWriter.stop();
+    }
+
+    @Test
+    void retriesUntilWritten() {
+        failures.set(3);
+        feedWriter.enqueue(1L, EventType.LIKE, Operation.ADD, 10L);
+
+        feedWriter.flush();
+
+        assertThat(countFeeds()).isEqualTo(1);
+        assertThat(failures.get()).isZero();
+    }
+
+    @Test
+    void flushReturnsWhenBatchIsDropped() {
+        failures.set(Integer.MAX_VALUE);
+        feedWriter.enqueue(1L, EventType.LIKE, Operation.ADD, 10L);
+
+        feedWriter.flush();
+
+        assertThat(countFeeds()).isZero();
+
+        failures.set(0);
+        feedWriter.enqueue(1L, EventType.LIKE, Operation.ADD, 11L);
+        feedWriter.flush();
+
+        assertThat(countFeeds()).isEqualTo(1);
+    }
+
+    @Test
+    void fansOutWholeBatch() {
+        jdbcTemplate.update("INSERT INTO users (email, login) VALUES ('a@mail.ru', 'a'), ('b@mail.ru', 'b')");
+        jdbcTemplate.update("INSERT INTO friend (user_id, friend_id, confirmed) VALUES (2, 1, FALSE)");
+        for (long entityId = 1; entityId <= 25; entityId++) {
+            feedWriter.enqueue(1L, EventType.LIKE, Operation.ADD, entityId);
+        }
+
+        feedWriter.flush();
+
+        assertThat(countFeeds()).isEqualTo(25);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM timeline WHERE user_id = 2", Integer.class))
+                .isEqualTo(25);
+    }
+
+    private int countFeeds() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM feeds", Integer.class);
+    }
+}
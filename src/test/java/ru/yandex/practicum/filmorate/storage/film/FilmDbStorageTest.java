@@ -6,14 +6,21 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.director.DirectorStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -21,11 +28,13 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest
 @AutoConfigureTestDatabase
-@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 class FilmDbStorageTest {
     private final FilmDbStorage filmDbStorage;
     private final UserDbStorage userStorage;
+    private final DirectorStorage directorStorage;
+    private final JdbcTemplate jdbcTemplate;
 
     @BeforeEach
     void beforeEach() {
@@ -78,6 +87,30 @@ class FilmDbStorageTest {
         assertThat(all.size()).isEqualTo(3);
     }
 
+    @Test
+    void getAllWithGenresAndLikes() {
+        Film film = getFilm();
+        film.getGenres().add(Genre.builder().id(2L).build());
+        film.getGenres().add(Genre.builder().id(1L).build());
+        filmDbStorage.save(film);
+        filmDbStorage.addLike(film.getId(), 1L, 8);
+
+        Film loaded = filmDbStorage.getAll().get(3);
+
+        assertThat(loaded.getGenres()).extracting(Genre::getName).containsExactly("Комедия", "Драма");
+        assertThat(loaded.getUsersWhoLike()).containsEntry(1L, 8);
+        assertThat(filmDbStorage.getAll().get(0).getGenres()).isEmpty();
+    }
+
+    @Test
+    void getPage() {
+        List<Film> first = filmDbStorage.getPage(0, 2);
+        List<Film> second = filmDbStorage.getPage(first.get(1).getId(), 2);
+
+        assertThat(first).extracting(Film::getId).containsExactly(1L, 2L);
+        assertThat(second).extracting(Film::getId).containsExactly(3L);
+    }
+
     @Test
     void updateCorrect() {
         Film film = getFilmUpdate();
@@ -87,6 +120,51 @@ class FilmDbStorageTest {
         assertThat(Objects.equals(film, update.get())).isTrue();
     }
 
+    @Test
+    void updateWritesOnlyChangedLinks() {
+        long first = directorStorage.addDirector(Director.builder().name("first").build()).getId();
+        long second = directorStorage.addDirector(Director.builder().name("second").build()).getId();
+        Film film = filmDbStorage.getById(1L).orElseThrow();
+        film.getGenres().add(Genre.builder().id(1L).build());
+        film.getGenres().add(Genre.builder().id(2L).build());
+        film.getDirectors().add(Director.builder().id(first).build());
+        filmDbStorage.update(film);
+        List<Long> genreRows = linkRows("film_genre");
+        List<Long> directorRows = linkRows("film_director");
+        Long dramaRow = jdbcTemplate.queryForObject(
+                "SELECT _ROWID_ FROM film_genre WHERE film_id = 1 AND genre_id = 2", Long.class);
+
+        film.setName("renamed");
+        filmDbStorage.update(film);
+
+        assertThat(linkRows("film_genre")).isEqualTo(genreRows);
+        assertThat(linkRows("film_director")).isEqualTo(directorRows);
+        assertThat(filmDbStorage.getById(1L).orElseThrow().getName()).isEqualTo("renamed");
+
+        film.getGenres().removeIf(genre -> genre.getId() == 1L);
+        film.getGenres().add(Genre.builder().id(3L).build());
+        film.getDirectors().clear();
+        film.getDirectors().add(Director.builder().id(second).build());
+        filmDbStorage.update(film);
+        Film updated = filmDbStorage.getById(1L).orElseThrow();
+
+        assertThat(updated.getGenres()).extracting(Genre::getId).containsExactly(2L, 3L);
+        assertThat(updated.getDirectors()).extracting(Director::getId).containsExactly(second);
+        assertThat(linkRows("film_genre")).contains(dramaRow);
+    }
+
+    @Test
+    void updateKeepsRateFromMarks() {
+        filmDbStorage.addLike(1L, 1L, 6);
+        Film film = filmDbStorage.getById(1L).orElseThrow();
+        film.setRate(100f);
+
+        Optional<Film> update = filmDbStorage.update(film);
+
+        assertThat(update.orElseThrow().getRate()).isEqualTo(6);
+        assertThat(filmDbStorage.getById(1L).orElseThrow().getRate()).isEqualTo(6);
+    }
+
     @Test
     void updateIncorrect() {
         Film film = getFilmUpdateError();
@@ -109,7 +187,7 @@ class FilmDbStorageTest {
 
         assertThat(byId.isPresent()).isTrue();
         assertThat(byId.get().getId()).isEqualTo(1L);
-        assertThat(byId.get().getRate()).isEqualTo(100);
+        assertThat(byId.get().getRate()).isEqualTo(0);
         assertThat(byId.get().getName()).isEqualTo("test1");
     }
 
@@ -125,25 +203,93 @@ class FilmDbStorageTest {
         List<Film> theMostPopularFilms = filmDbStorage.getTheMostPopularFilms(2);
 
         assertThat(theMostPopularFilms.size()).isEqualTo(2);
-        assertThat(theMostPopularFilms.get(0).getRate()).isEqualTo(600);
+        assertThat(theMostPopularFilms.get(0).getRate()).isEqualTo(0);
     }
 
     @Test
     void addLike() {
-        filmDbStorage.addLike(1L, 1L);
+        filmDbStorage.addLike(1L, 1L, 10);
 
         Optional<Film> byId = filmDbStorage.getById(1L);
 
-        assertThat(byId.get().getRate()).isEqualTo(101);
+        assertThat(byId.get().getRate()).isEqualTo(10);
+        assertThat(filmDbStorage.getTheMostPopularFilms(1).get(0).getId()).isEqualTo(1L);
+    }
+
+    @Test
+    void addLikeAgainReplacesMark() {
+        filmDbStorage.addLike(1L, 1L, 10);
+        filmDbStorage.addLike(1L, 1L, 4);
+        filmDbStorage.addLike(1L, 1L, 4);
+
+        Film film = filmDbStorage.getById(1L).orElseThrow();
+
+        assertThat(film.getUsersWhoLike()).containsExactly(Map.entry(1L, 4));
+        assertThat(film.getRate()).isEqualTo(4);
+        assertThat(filmDbStorage.getTheMostPopularFilms(1).get(0).getId()).isEqualTo(1L);
+    }
+
+    @Test
+    void removeMissingLike() {
+        assertThat(filmDbStorage.removeLike(1L, 1L)).isFalse();
+        assertThat(filmDbStorage.existsById(1L)).isTrue();
+        assertThat(filmDbStorage.existsById(999L)).isFalse();
     }
 
     @Test
     void removeLike() {
+        filmDbStorage.addLike(1L, 1L, 10);
         filmDbStorage.removeLike(1L, 1L);
 
         Optional<Film> byId = filmDbStorage.getById(1L);
 
-        assertThat(byId.get().getRate()).isEqualTo(99);
+        assertThat(byId.get().getUsersWhoLike()).isEmpty();
+        assertThat(byId.get().getRate()).isEqualTo(0);
+        assertThat(filmDbStorage.getTheMostPopularFilms(1).get(0).getId()).isEqualTo(3L);
+    }
+
+    @Test
+    void forEachMark() {
+        filmDbStorage.addLike(1L, 1L, 7);
+        filmDbStorage.addLike(2L, 1L, 3);
+        filmDbStorage.addLike(3L, 1L, 9);
+        filmDbStorage.removeLike(2L, 1L);
+
+        List<List<Long>> marks = new ArrayList<>();
+        filmDbStorage.forEachMark((userId, filmId, mark) -> marks.add(List.of(userId, filmId, (long) mark)));
+
+        assertThat(marks).containsExactlyInAnyOrder(List.of(1L, 1L, 7L), List.of(1L, 3L, 9L));
+    }
+
+    @Test
+    void forEachForIndexes() {
+        long directorId = directorStorage.addDirector(Director.builder().name("director").build()).getId();
+        Film film = filmDbStorage.getById(2L).orElseThrow();
+        film.getGenres().add(Genre.builder().id(1L).build());
+        film.getDirectors().add(Director.builder().id(directorId).build());
+        filmDbStorage.update(film);
+        filmDbStorage.addLike(2L, 1L, 5);
+
+        List<List<Long>> popularity = new ArrayList<>();
+        Map<Long, String> titles = new HashMap<>();
+        List<List<Long>> genres = new ArrayList<>();
+        List<List<Long>> directors = new ArrayList<>();
+        filmDbStorage.forEachPopularity((filmId, year, likes) -> popularity.add(List.of(filmId, (long) year, likes)));
+        filmDbStorage.forEachTitle(titles::put);
+        filmDbStorage.forEachGenreLink((filmId, genreId) -> genres.add(List.of(filmId, genreId)));
+        filmDbStorage.forEachDirectorLink((filmId, id) -> directors.add(List.of(filmId, id)));
+
+        assertThat(popularity).containsExactlyInAnyOrder(List.of(1L, 1970L, 0L), List.of(2L, 1970L, 1L),
+                List.of(3L, 1970L, 0L));
+        assertThat(titles).containsEntry(1L, "test1").hasSize(3);
+        assertThat(genres).containsExactly(List.of(2L, 1L));
+        assertThat(directors).containsExactly(List.of(2L, directorId));
+    }
+
+    //Служебные номера строк связей фильма 1: при удалении и повторной вставке строки номер меняется
+    private List<Long> linkRows(String table) {
+        return jdbcTemplate.queryForList("SELECT _ROWID_ FROM " + table + " WHERE film_id = 1 ORDER BY 1",
+                Long.class);
     }
 
     private void addFilmsInDb() {
@@ -152,7 +298,7 @@ class FilmDbStorageTest {
                 .description("test description")
                 .releaseDate(LocalDate.EPOCH)
                 .duration(100)
-                .rate(100)
+                .rate(100f)
                 .mpa(Mpa.builder()
                         .id(1L)
                         .name("G")
@@ -164,7 +310,7 @@ class FilmDbStorageTest {
                 .description("test description2")
                 .releaseDate(LocalDate.EPOCH)
                 .duration(102)
-                .rate(102)
+                .rate(102f)
                 .mpa(Mpa.builder()
                         .id(1L)
                         .name("G")
@@ -176,7 +322,7 @@ class FilmDbStorageTest {
                 .description("test description2")
                 .releaseDate(LocalDate.EPOCH)
                 .duration(102)
-                .rate(600)
+                .rate(600f)
                 .mpa(Mpa.builder()
                         .id(1L)
                         .name("G")
@@ -205,7 +351,7 @@ class FilmDbStorageTest {
                 .description("test description")
                 .releaseDate(LocalDate.EPOCH)
                 .duration(100)
-                .rate(100)
+                .rate(100f)
                 .mpa(Mpa.builder()
                         .id(1L)
                         .name("G")
@@ -233,7 +379,7 @@ class FilmDbStorageTest {
                 .description("update description")
                 .releaseDate(LocalDate.EPOCH)
                 .duration(100)
-                .rate(100)
+                .rate(100f)
                 .mpa(Mpa.builder()
                         .id(2L)
                         .name("PG")
@@ -248,7 +394,7 @@ class FilmDbStorageTest {
                 .description("update description")
                 .releaseDate(LocalDate.EPOCH)
                 .duration(100)
-                .rate(100)
+                .rate(100f)
                 .mpa(Mpa.builder()
                         .id(2L)
                         .name("PG")
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import ru.yandex.practicum.filmorate.model.Genre;
 
 import java.util.List;
@@ -17,6 +18,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 class GenreStorageDbTest {
     private final GenreStorageDb genreStorageDb;
+    private final JdbcTemplate jdbcTemplate;
 
     @Test
     void getAll() {
@@ -40,4 +42,29 @@ class GenreStorageDbTest {
 
         assertThat(byId.isPresent()).isFalse();
     }
-}
\ No newline at end of file
+
+    @Test
+    void refresh() {
+        jdbcTemplate.update("UPDATE genre SET genre_name = 'Комедия положений' WHERE genre_id = 1");
+
+        try {
+            assertThat(genreStorageDb.getById(1L).get().getName()).isEqualTo("Комедия");
+
+            genreStorageDb.refresh();
+
+            assertThat(genreStorageDb.getById(1L).get().getName()).isEqualTo("Комедия положений");
+        } finally {
+            jdbcTemplate.update("UPDATE genre SET genre_name = 'Комедия' WHERE genre_id = 1");
+            genreStorageDb.refresh();
+        }
+    }
+
+    @Test
+    void changesOfReturnedObjectDoNotLeakIntoSnapshot() {
+        genreStorageDb.getById(1L).orElseThrow().setName("changed");
+        genreStorageDb.getAll().get(0).setName("changed");
+
+        assertThat(genreStorageDb.getById(1L).orElseThrow().getName()).isEqualTo("Комедия");
+        assertThat(genreStorageDb.getAll().get(0).getName()).isEqualTo("Комедия");
+    }
+}
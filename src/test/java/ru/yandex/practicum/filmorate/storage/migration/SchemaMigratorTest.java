@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.storage.migration;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.annotation.DirtiesContext;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class SchemaMigratorTest {
+    private final SchemaMigrator schemaMigrator;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    void history() {
+        assertThat(jdbcTemplate.queryForList("SELECT script FROM schema_history ORDER BY script", String.class))
+                .containsExactly("R__seed.sql", "V1__init.sql", "V2__keys_and_indexes.sql", "V3__timeline.sql",
+                        "V4__reviews_by_usefulness.sql", "V5__follower_counts.sql");
+        assertThat(jdbcTemplate.queryForObject("SELECT MAX(version) FROM schema_history", Integer.class))
+                .isEqualTo(5);
+    }
+
+    @Test
+    void migrateAgain() {
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) " +
+                "VALUES ('mail@mail.ru', 'login', 'name', '2000-01-01')");
+
+        assertThat(schemaMigrator.migrate()).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    void seedChanged() {
+        jdbcTemplate.update("DELETE FROM genre WHERE genre_id = 6");
+        jdbcTemplate.update("UPDATE schema_history SET checksum = 0 WHERE script = 'R__seed.sql'");
+
+        assertThat(schemaMigrator.migrate()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM genre", Integer.class)).isEqualTo(6);
+        assertThat(schemaMigrator.migrate()).isZero();
+    }
+
+    //База со схемой из schema.sql до появления миграций: без агрегатов лайков и с повторами в связях
+    @Test
+    void upgradeBaselineDatabase() {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:baseline;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate legacy = new JdbcTemplate(dataSource);
+        new ResourceDatabasePopulator(new ClassPathResource("sql/baseline_schema.sql")).execute(dataSource);
+        legacy.update("INSERT INTO mpa VALUES (1, 'G')");
+        legacy.update("INSERT INTO genre VALUES (1, 'Комедия')");
+        legacy.update("INSERT INTO users (email, login) VALUES ('a@mail.ru', 'a'), ('b@mail.ru', 'b')");
+        legacy.update("INSERT INTO film (name, rate) VALUES ('first', 100), ('second', 100)");
+        legacy.update("INSERT INTO film_mpa VALUES (1, 1), (1, 1)");
+        legacy.update("INSERT INTO film_genre VALUES (1, 1), (1, 1)");
+        legacy.update("INSERT INTO likes VALUES (1, 1, 8), (1, 1, 8), (1, 2, 4)");
+        legacy.update("INSERT INTO friend VALUES (1, 2, FALSE), (1, 2, FALSE)");
+
+        try {
+            assertThat(new SchemaMigrator(dataSource).migrate()).isEqualTo(6);
+
+            assertThat(legacy.queryForList("SELECT like_count, mark_sum, rate FROM film ORDER BY film_id"))
+                    .extracting(row -> List.of(row.get("LIKE_COUNT"), row.get("MARK_SUM"), row.get("RATE")))
+                    .containsExactly(List.of(2L, 12L, 6f), List.of(0L, 0L, 0f));
+            assertThat(legacy.queryForObject("SELECT COUNT(*) FROM likes", Integer.class)).isEqualTo(2);
+            assertThat(legacy.queryForObject("SELECT COUNT(*) FROM friend", Integer.class)).isEqualTo(1);
+            assertThat(legacy.queryForList("SELECT followers FROM users ORDER BY user_id", Integer.class))
+                    .containsExactly(0, 1);
+            assertThat(legacy.queryForObject("SELECT COUNT(*) FROM film_genre", Integer.class)).isEqualTo(1);
+            assertThat(legacy.queryForObject("SELECT COUNT(*) FROM film_mpa", Integer.class)).isEqualTo(1);
+            assertThat(new SchemaMigrator(dataSource).migrate()).isZero();
+        } finally {
+            legacy.execute("SHUTDOWN");
+        }
+    }
+}
@@ -50,4 +50,13 @@ class MpaStorageDbTest {
     void notContainsMpa() {
         assertThat(mpaStorageDb.containsMpa(7666L)).isFalse();
     }
-}
\ No newline at end of file
+
+    @Test
+    void changesOfReturnedObjectDoNotLeakIntoSnapshot() {
+        mpaStorageDb.getById(1L).orElseThrow().setName("changed");
+        mpaStorageDb.getAll().get(0).setName("changed");
+
+        assertThat(mpaStorageDb.getById(1L).orElseThrow().getName()).isEqualTo("G");
+        assertThat(mpaStorageDb.getAll().get(0).getName()).isEqualTo("G");
+    }
+}
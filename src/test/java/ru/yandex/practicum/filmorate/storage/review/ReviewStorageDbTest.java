@@ -0,0 +1,174 @@
+package ru.yandex.practicum.filmorate.storage.review;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.Review;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class ReviewStorageDbTest {
+    private static final int THREADS = 64;
+    private static final int LIKING_USERS = 40;
+    private static final int VOTES_PER_USER = 5;
+
+    private final ReviewStorageDb reviewStorage;
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final JdbcTemplate jdbcTemplate;
+    private final List<Long> userIds = new ArrayList<>();
+    private long reviewId;
+
+    @BeforeEach
+    void beforeEach() {
+        for (int i = 0; i < THREADS; i++) {
+            userIds.add(userStorage.save(User.builder()
+                    .name("user" + i)
+                    .email("user" + i + "@mail.ru")
+                    .login("user" + i)
+                    .birthday(LocalDate.EPOCH)
+                    .build()).get().getId());
+        }
+
+        long filmId = filmStorage.save(Film.builder()
+                .name("test")
+                .description("test description")
+                .releaseDate(LocalDate.EPOCH)
+                .duration(100)
+                .mpa(Mpa.builder().id(1L).build())
+                .build()).get().getId();
+
+        reviewId = reviewStorage.addReview(Review.builder()
+                .content("content")
+                .isPositive(true)
+                .userId(userIds.get(0))
+                .filmId(filmId)
+                .build()).get().getReviewId();
+    }
+
+    @Test
+    void likeTwice() {
+        reviewStorage.addLike(reviewId, userIds.get(0));
+        reviewStorage.addLike(reviewId, userIds.get(0));
+
+        assertThat(getUseful()).isEqualTo(1);
+    }
+
+    @Test
+    void dislikeAfterLike() {
+        reviewStorage.addLike(reviewId, userIds.get(0));
+        reviewStorage.addDislike(reviewId, userIds.get(0));
+
+        assertThat(getUseful()).isEqualTo(-1);
+        assertThat(countVotes("review_likes")).isZero();
+        assertThat(countVotes("review_dislikes")).isEqualTo(1);
+    }
+
+    @Test
+    void removeMissingVote() {
+        reviewStorage.addLike(reviewId, userIds.get(0));
+        reviewStorage.removeDislike(reviewId, userIds.get(0));
+        reviewStorage.removeLike(reviewId, userIds.get(1));
+
+        assertThat(getUseful()).isEqualTo(1);
+    }
+
+    @Test
+    void getTopReviews() {
+        long filmId = reviewStorage.getReviewById(reviewId).get().getFilmId();
+        List<Long> reviewIds = new ArrayList<>(List.of(reviewId));
+
+        for (int i = 1; i < 5; i++) {
+            reviewIds.add(reviewStorage.addReview(Review.builder()
+                    .content("content" + i)
+                    .isPositive(true)
+                    .userId(userIds.get(i))
+                    .filmId(filmId)
+                    .build()).get().getReviewId());
+        }
+
+        //Полезность: 0, 2, -1, 2, 0
+        reviewStorage.addLike(reviewIds.get(1), userIds.get(0));
+        reviewStorage.addLike(reviewIds.get(1), userIds.get(1));
+        reviewStorage.addDislike(reviewIds.get(2), userIds.get(0));
+        reviewStorage.addLike(reviewIds.get(3), userIds.get(0));
+        reviewStorage.addLike(reviewIds.get(3), userIds.get(1));
+
+        List<Review> first = reviewStorage.getTopReviews(filmId, null, 3);
+        List<Review> second = reviewStorage.getTopReviews(filmId, first.get(2).getReviewId(), 3);
+
+        assertThat(first).extracting(Review::getReviewId)
+                .containsExactly(reviewIds.get(1), reviewIds.get(3), reviewIds.get(0));
+        assertThat(second).extracting(Review::getReviewId)
+                .containsExactly(reviewIds.get(4), reviewIds.get(2));
+        assertThat(reviewStorage.getTopReviews(null, null, 2)).extracting(Review::getReviewId)
+                .containsExactly(reviewIds.get(1), reviewIds.get(3));
+        assertThat(reviewStorage.getTopReviews(null, reviewIds.get(3), 2)).extracting(Review::getReviewId)
+                .containsExactly(reviewIds.get(0), reviewIds.get(4));
+        assertThat(reviewStorage.getTopReviews(filmId + 1, null, 10)).isEmpty();
+        assertThat(reviewStorage.getTopReviews(null, 331L, 10)).isEmpty();
+    }
+
+    //64 потока голосуют за один отзыв одновременно и повторяют свой голос: ни одно изменение не теряется
+    @Test
+    void concurrentVotes() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < THREADS; i++) {
+            long userId = userIds.get(i);
+            boolean like = i < LIKING_USERS;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int vote = 0; vote < VOTES_PER_USER; vote++) {
+                    if (like) {
+                        reviewStorage.addLike(reviewId, userId);
+                    } else {
+                        reviewStorage.addDislike(reviewId, userId);
+                    }
+                }
+                return null;
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertThat(getUseful()).isEqualTo(LIKING_USERS - (THREADS - LIKING_USERS));
+        assertThat(countVotes("review_likes")).isEqualTo(LIKING_USERS);
+        assertThat(countVotes("review_dislikes")).isEqualTo(THREADS - LIKING_USERS);
+    }
+
+    private long getUseful() {
+        return reviewStorage.getReviewById(reviewId).get().getUseful();
+    }
+
+    private int countVotes(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+    }
+}
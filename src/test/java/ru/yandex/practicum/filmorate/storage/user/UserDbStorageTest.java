@@ -18,7 +18,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest
 @AutoConfigureTestDatabase
-@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 class UserDbStorageTest {
     private final UserDbStorage userStorage;
@@ -52,6 +52,12 @@ class UserDbStorageTest {
         assertThat(all.size()).isEqualTo(6);
     }
 
+    @Test
+    void getPage() {
+        assertThat(userStorage.getPage(0, 4)).extracting(User::getId).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(userStorage.getPage(4, 4)).extracting(User::getId).containsExactly(5L, 6L);
+    }
+
     @Test
     void updateCorrect() {
         User updateUser = updateUser();
@@ -98,6 +104,26 @@ class UserDbStorageTest {
         assertThat(present).isFalse();
     }
 
+    @Test
+    void existsById() {
+        assertThat(userStorage.existsById(1L)).isTrue();
+        assertThat(userStorage.existsById(331L)).isFalse();
+    }
+
+    @Test
+    void getAllWithFriends() {
+        userStorage.addFriend(1L, 2L);
+        userStorage.addFriend(1L, 3L);
+        userStorage.addFriend(2L, 1L);
+
+        List<User> all = userStorage.getAll();
+
+        assertThat(all.get(0).getFriendsId()).containsExactlyInAnyOrder(2L, 3L);
+        assertThat(all.get(1).getFriendsId()).containsExactly(1L);
+        assertThat(all.get(2).getFriendsId()).isEmpty();
+        assertThat(userStorage.getById(1L).get().getFriendsId()).containsExactlyInAnyOrder(2L, 3L);
+    }
+
     @Test
     void addFriendCorrect() {
         userStorage.addFriend(5L, 6L);
@@ -107,6 +133,21 @@ class UserDbStorageTest {
         assertThat(userStorage.getFriends(6L).size()).isEqualTo(1);
     }
 
+    @Test
+    void addFriendTwice() {
+        assertThat(userStorage.addFriend(5L, 6L)).isTrue();
+        assertThat(userStorage.addFriend(5L, 6L)).isTrue();
+
+        assertThat(userStorage.getFriends(5L).size()).isEqualTo(1);
+    }
+
+    @Test
+    void addAndRemoveFriendOfUnknownUser() {
+        assertThat(userStorage.addFriend(555L, 3L)).isFalse();
+        assertThat(userStorage.removeFriend(3L, 555L)).isFalse();
+        assertThat(userStorage.removeFriend(3L, 4L)).isTrue();
+    }
+
     @Test
     void addFriendIncorrect() {
         userStorage.addFriend(3L, 555L);
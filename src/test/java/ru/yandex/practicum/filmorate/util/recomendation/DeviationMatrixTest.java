@@ -0,0 +1,94 @@
+package ru.yandex.practicum.filmorate.util.recomendation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeviationMatrixTest {
+
+    @Test
+    void addAndRemove() {
+        DeviationMatrix matrix = new DeviationMatrix();
+        matrix.add(1, 2, 3);
+        matrix.add(1, 2, -1);
+        matrix.add(1, 1, 5);
+
+        assertThat(row(matrix, 1)).containsExactly(Map.entry(2L, List.of(2, 2)));
+        assertThat(row(matrix, 2)).containsExactly(Map.entry(1L, List.of(-2, 2)));
+        assertThat(matrix.size()).isEqualTo(2);
+
+        matrix.remove(2, 1, 1);
+        matrix.remove(1, 2, 3);
+
+        assertThat(row(matrix, 1)).isEmpty();
+        assertThat(row(matrix, 2)).isEmpty();
+        assertThat(matrix.size()).isZero();
+    }
+
+    @Test
+    void rejectsZeroId() {
+        DeviationMatrix matrix = new DeviationMatrix();
+
+        assertThatThrownBy(() -> matrix.add(0, 1, 2)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> matrix.add(1, 0, 2)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(matrix.size()).isZero();
+    }
+
+    @Test
+    void matchesMapUnderChurn() {
+        DeviationMatrix matrix = new DeviationMatrix();
+        Map<Long, Map<Long, int[]>> expected = new HashMap<>();
+        List<long[]> pairs = new ArrayList<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20_000; i++) {
+            if (!pairs.isEmpty() && random.nextInt(3) == 0) {
+                long[] pair = pairs.remove(random.nextInt(pairs.size()));
+                matrix.remove(pair[0], pair[1], (int) pair[2]);
+                update(expected, pair[0], pair[1], (int) -pair[2], -1);
+                update(expected, pair[1], pair[0], (int) pair[2], -1);
+            } else {
+                long from = 1 + random.nextInt(50);
+                long to = 1 + random.nextInt(50) * 64L;
+                int diff = random.nextInt(19) - 9;
+
+                if (from == to) {
+                    continue;
+                }
+
+                pairs.add(new long[]{from, to, diff});
+                matrix.add(from, to, diff);
+                update(expected, from, to, diff, 1);
+                update(expected, to, from, -diff, 1);
+            }
+        }
+
+        for (long filmId = 1; filmId <= 50 * 64; filmId++) {
+            Map<Long, List<Integer>> row = new HashMap<>();
+            expected.getOrDefault(filmId, Collections.emptyMap())
+                    .forEach((to, value) -> row.put(to, List.of(value[0], value[1])));
+            assertThat(row(matrix, filmId)).isEqualTo(row);
+        }
+        assertThat(matrix.size()).isEqualTo(pairs.size());
+    }
+
+    private static void update(Map<Long, Map<Long, int[]>> expected, long from, long to, int sum, int count) {
+        Map<Long, int[]> row = expected.computeIfAbsent(from, id -> new HashMap<>());
+        int[] value = row.computeIfAbsent(to, id -> new int[2]);
+        value[0] += sum;
+        value[1] += count;
+
+        if (value[1] == 0) {
+            row.remove(to);
+        }
+    }
+
+    private static Map<Long, List<Integer>> row(DeviationMatrix matrix, long from) {
+        Map<Long, List<Integer>> row = new HashMap<>();
+        matrix.forEachInRow(from, (to, sum, count) -> row.put(to, List.of(sum, count)));
+        return row;
+    }
+}
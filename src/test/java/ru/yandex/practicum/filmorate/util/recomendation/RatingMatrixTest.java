@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.util.recomendation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RatingMatrixTest {
+
+    @Test
+    void usersWhoRatedFollowPutAndRemove() {
+        RatingMatrix matrix = new RatingMatrix();
+        matrix.put(1, 10, 5);
+        matrix.put(2, 10, 7);
+        matrix.put(2, 10, 8);
+        matrix.put(2, 20, 3);
+
+        assertThat(matrix.getUsersWhoRated(10)).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(matrix.getUsersWhoRated(20)).containsExactly(2L);
+        assertThat(matrix.size()).isEqualTo(3);
+
+        matrix.remove(2, 10);
+        matrix.remove(2, 30);
+
+        assertThat(matrix.getUsersWhoRated(10)).containsExactly(1L);
+        assertThat(matrix.size()).isEqualTo(2);
+
+        matrix.getUsersWhoRated(20).forEach(userId -> matrix.remove(userId, 20));
+
+        assertThat(matrix.getUsersWhoRated(20)).isEmpty();
+
+        matrix.clear();
+
+        assertThat(matrix.getUsersWhoRated(10)).isEmpty();
+        assertThat(matrix.size()).isZero();
+    }
+}
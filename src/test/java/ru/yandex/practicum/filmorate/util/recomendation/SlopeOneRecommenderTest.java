@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.util.recomendation;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class SlopeOneRecommenderTest {
+    private final SlopeOneRecommender recommender;
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+
+    @BeforeEach
+    void beforeEach() {
+        for (int i = 1; i <= 4; i++) {
+            filmStorage.save(Film.builder()
+                    .name("film" + i)
+                    .description("description")
+                    .releaseDate(LocalDate.EPOCH)
+                    .duration(100)
+                    .mpa(Mpa.builder().id(1L).build())
+                    .build());
+            userStorage.save(User.builder()
+                    .email("user" + i + "@mail.ru")
+                    .login("user" + i)
+                    .birthday(LocalDate.EPOCH)
+                    .build());
+        }
+
+        filmStorage.addLike(1L, 1L, 8);
+        filmStorage.addLike(2L, 1L, 6);
+        filmStorage.addLike(1L, 2L, 9);
+        filmStorage.addLike(2L, 2L, 7);
+        filmStorage.addLike(3L, 2L, 10);
+        filmStorage.addLike(1L, 3L, 3);
+        filmStorage.addLike(4L, 3L, 2);
+    }
+
+    @Test
+    void recommend() {
+        assertThat(recommender.recommend(1L)).containsExactly(3L, 4L);
+        assertThat(recommender.recommend(4L)).isEmpty();
+    }
+
+    @Test
+    void recommendAfterRemoveLike() {
+        filmStorage.removeLike(3L, 2L);
+
+        assertThat(recommender.recommend(1L)).containsExactly(4L);
+    }
+
+    @Test
+    void incrementalUpdatesMatchRebuild() {
+        filmStorage.removeLike(1L, 3L);
+        filmStorage.addLike(3L, 4L, 5);
+        filmStorage.addLike(1L, 4L, 6);
+        filmStorage.delete(2L);
+        List<Long> incremental = recommender.recommend(1L);
+
+        recommender.rebuild();
+
+        assertThat(recommender.recommend(1L)).isEqualTo(incremental).containsExactly(3L);
+    }
+}
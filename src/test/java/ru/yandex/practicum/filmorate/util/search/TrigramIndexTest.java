@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.util.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrigramIndexTest {
+
+    @Test
+    void searchIgnoresCase() {
+        TrigramIndex index = new TrigramIndex();
+        index.put(1, "Крадущийся тигр");
+        index.put(2, "Тигры Пасифика");
+        index.put(3, "Matrix");
+
+        assertThat(index.search("ТИГР")).containsExactly(1L, 2L);
+        assertThat(index.search("тигр, ")).isEmpty();
+        assertThat(index.search("trix")).containsExactly(3L);
+        assertThat(index.search("x")).containsExactly(3L);
+        assertThat(index.search("")).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void putReplacesText() {
+        TrigramIndex index = new TrigramIndex();
+        index.put(1, "Aaa bbb");
+        index.put(1, "Ccc");
+        index.remove(2);
+
+        assertThat(index.search("aaa")).isEmpty();
+        assertThat(index.search("ccc")).containsExactly(1L);
+        assertThat(index.size()).isEqualTo(1);
+
+        index.remove(1);
+
+        assertThat(index.search("ccc")).isEmpty();
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    void matchesContainsUnderChurn() {
+        TrigramIndex index = new TrigramIndex();
+        Map<Long, String> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20_000; i++) {
+            long id = 1 + random.nextInt(500);
+
+            if (random.nextInt(4) == 0) {
+                index.remove(id);
+                expected.remove(id);
+            } else {
+                String text = randomText(random, 4 + random.nextInt(12));
+                index.put(id, text);
+                expected.put(id, text.toLowerCase());
+            }
+        }
+
+        for (int i = 0; i < 500; i++) {
+            String query = randomText(random, 1 + random.nextInt(4));
+            List<Long> matches = expected.entrySet().stream()
+                    .filter(e -> e.getValue().contains(query.toLowerCase()))
+                    .map(Map.Entry::getKey)
+                    .sorted()
+                    .collect(Collectors.toList());
+
+            assertThat(index.search(query)).isEqualTo(matches);
+        }
+    }
+
+    private static String randomText(Random random, int length) {
+        String alphabet = "abcABC xyz";
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < length; i++) {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return text.toString();
+    }
+}
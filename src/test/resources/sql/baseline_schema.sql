@@ -1,19 +1,3 @@
-drop table if exists film_genre CASCADE;
-drop table if exists film CASCADE;
-drop table if exists friend CASCADE;
-drop table if exists likes CASCADE;
-drop table if exists users CASCADE;
-drop table if exists genre CASCADE;
-drop table if exists mpa CASCADE;
-drop table if exists film_mpa CASCADE;
-drop table if exists reviews CASCADE;
-drop table if exists review_dislikes CASCADE;
-drop table if exists review_likes CASCADE;
-drop table if exists feeds CASCADE;
-drop table if exists directors CASCADE;
-drop table if exists film_director CASCADE;
-
-
 CREATE TABLE IF NOT EXISTS users
 (
     user_id  BIGINT AUTO_INCREMENT PRIMARY KEY,
@@ -112,4 +96,4 @@ CREATE TABLE IF NOT EXISTS feeds
     operation VARCHAR(6)   NOT NULL,
     event_id BIGINT AUTO_INCREMENT PRIMARY KEY,
     entity_id BIGINT       NOT NULL
-);
\ No newline at end of file
+);